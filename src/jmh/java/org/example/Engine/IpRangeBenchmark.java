@@ -0,0 +1,49 @@
+package org.example.Engine;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Range parsing and expansion as done by {@code DiscoveryEngine.expandIpRange} and the sweep.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IpRangeBenchmark
+{
+    @State(Scope.Benchmark)
+    public static class Range
+    {
+        @Param({"10.0.0.1", "10.0.0.0/24", "10.0.0.1-10.0.3.254,!10.0.1.0/24", "10.0.0.0/16"})
+        public String spec;
+    }
+
+    @Benchmark
+    public IpRange parse(Range range)
+    {
+        return IpRange.parse(range.spec);
+    }
+
+    @Benchmark
+    public void parseAndExpand(Range range, Blackhole blackhole)
+    {
+        for (var ip : IpRange.parse(range.spec))
+        {
+            blackhole.consume(ip);
+        }
+    }
+
+    @Benchmark
+    public void isValidIp(Blackhole blackhole)
+    {
+        blackhole.consume(IpRange.isValidIp("192.168.100.254"));
+
+        blackhole.consume(IpRange.isValidIp("192.168.100.256"));
+
+        blackhole.consume(IpRange.isValidIp("not-an-ip"));
+    }
+}
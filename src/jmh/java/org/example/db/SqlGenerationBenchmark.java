@@ -0,0 +1,49 @@
+package org.example.db;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL text and tuple building for the statements {@link DbQueryHelper} issues. After the first call the SQL comes
+ * from the template cache, so this mostly measures key building and the lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SqlGenerationBenchmark
+{
+    private JsonObject row;
+
+    @Setup
+    public void setup()
+    {
+        row = new JsonObject()
+                .put("name", "core-switch")
+                .put("ip", "10.0.0.0/24")
+                .put("port", 22)
+                .put("credential_ids", new JsonArray().add(1).add(2).add(3));
+    }
+
+    @Benchmark
+    public void insert(Blackhole blackhole)
+    {
+        var fieldNames = DbQueryHelper.sortedFieldNames(row);
+
+        blackhole.consume(DbQueryHelper.insertSql("discoveries", fieldNames));
+
+        blackhole.consume(DbQueryHelper.insertTuple(row, fieldNames));
+    }
+
+    @Benchmark
+    public String update()
+    {
+        return DbQueryHelper.updateSql("discoveries", DbQueryHelper.sortedFieldNames(row), "id");
+    }
+}
@@ -0,0 +1,76 @@
+package org.example.utils;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.User;
+import io.vertx.ext.auth.authentication.TokenCredentials;
+import io.vertx.ext.auth.jwt.JWTAuth;
+import io.vertx.ext.auth.jwt.JWTAuthOptions;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token generation, verification through the {@link CachingJwtAuth} cache and the full signature check it saves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark
+{
+    private static final String SECRET = "benchmark-secret";
+
+    private Vertx vertx;
+
+    private JwtUtil jwtUtil;
+
+    private JWTAuth uncached;
+
+    private TokenCredentials credentials;
+
+    @Setup
+    public void setup()
+    {
+        vertx = Vertx.vertx();
+
+        jwtUtil = new JwtUtil(vertx, new JsonObject().put("jwt", new JsonObject().put("secret", SECRET)));
+
+        var key = Base64.getUrlEncoder().withoutPadding().encodeToString(SECRET.getBytes(StandardCharsets.UTF_8));
+
+        uncached = JWTAuth.create(vertx, new JWTAuthOptions()
+                .addJwk(new JsonObject().put("kty", "oct").put("alg", "HS256").put("k", key)));
+
+        credentials = new TokenCredentials(jwtUtil.generateToken("benchmark"));
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        jwtUtil.close();
+
+        vertx.close();
+    }
+
+    @Benchmark
+    public String generate()
+    {
+        return jwtUtil.generateToken("benchmark");
+    }
+
+    @Benchmark
+    public User verifyCached()
+    {
+        return jwtUtil.getAuthProvider().authenticate(credentials).toCompletionStage().toCompletableFuture().join();
+    }
+
+    @Benchmark
+    public User verifyUncached()
+    {
+        return uncached.authenticate(credentials).toCompletionStage().toCompletableFuture().join();
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.utils;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end cost of hashing and verifying a password on the hasher's own pool, at the production iteration
+ * count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class PasswordHasherBenchmark
+{
+    private Vertx vertx;
+
+    private PasswordHasher hasher;
+
+    private String stored;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        vertx = Vertx.vertx();
+
+        hasher = PasswordHasher.shared(vertx, new JsonObject());
+
+        stored = hasher.hash("correct horse battery staple").toCompletionStage().toCompletableFuture().get();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        vertx.close();
+    }
+
+    @Benchmark
+    public String hash() throws Exception
+    {
+        return hasher.hash("correct horse battery staple").toCompletionStage().toCompletableFuture().get();
+    }
+
+    @Benchmark
+    public Boolean verify() throws Exception
+    {
+        return hasher.verify("correct horse battery staple", stored).toCompletionStage().toCompletableFuture().get();
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.loadtest;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-in for the Go plugin in {@code --serve} mode. Answers every NDJSON request after a fixed delay with a
+ * profile derived only from the request, so repeated runs see identical results.
+ *
+ * <p>Usage: {@code FakePlugin <latencyMs>}
+ */
+public class FakePlugin
+{
+    public static void main(String[] args) throws Exception
+    {
+        var latencyMs = args.length > 0 ? Long.parseLong(args[0]) : 0L;
+
+        var out = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+
+        var scheduler = Executors.newSingleThreadScheduledExecutor();
+
+        try (var reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)))
+        {
+            String line;
+
+            while ((line = reader.readLine()) != null)
+            {
+                if (line.isBlank())
+                {
+                    continue;
+                }
+
+                var response = respond(new JsonObject(line));
+
+                scheduler.schedule(() ->
+                {
+                    synchronized (out)
+                    {
+                        out.println(response.encode());
+
+                        out.flush();
+                    }
+                }, latencyMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        scheduler.shutdown();
+    }
+
+    private static JsonObject respond(JsonObject request)
+    {
+        var response = new JsonObject()
+                .put("id", request.getString("id"))
+                .put("status", "success");
+
+        if (!"Discovery".equals(request.getString("requestType")))
+        {
+            return response;
+        }
+
+        var results = new JsonArray();
+
+        for (var context : request.getJsonArray("contexts", new JsonArray()))
+        {
+            var ip = ((JsonObject) context).getString("ip");
+
+            results.add(new JsonObject()
+                    .put("status", "success")
+                    .put("result", new JsonObject()
+                            .put("ip", ip)
+                            .put("hostname", "host-" + ip.replace('.', '-'))
+                            .put("os", "Linux")));
+        }
+
+        // Unbatched callers read the top-level "result", batched ones the positional "results"
+        return response
+                .put("result", results.isEmpty() ? null : results.getJsonObject(0).getValue("result"))
+                .put("results", results);
+    }
+}
@@ -0,0 +1,366 @@
+package org.example.loadtest;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop traffic driver. Requests are issued on a fixed schedule regardless of how fast earlier ones complete,
+ * and latency is measured from the scheduled start, so a saturated server shows up as growing latency rather than
+ * as a lower request rate.
+ */
+final class LoadGenerator
+{
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final String baseUrl;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final Map<String, Integer> mix;
+
+    private final SplittableRandom random;
+
+    private final AtomicInteger registrations = new AtomicInteger();
+
+    private int sshPort;
+
+    private String token;
+
+    private String username;
+
+    private String password;
+
+    private List<Integer> credentialIds = List.of();
+
+    private List<Integer> discoveryIds = List.of();
+
+    LoadGenerator(String baseUrl, Map<String, Integer> mix, long seed)
+    {
+        this.baseUrl = baseUrl;
+
+        this.mix = mix;
+
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Registers and logs in the load-test user and creates the credentials and discoveries the read and run
+     * operations pick from. Discoveries point at loopback ranges on {@code sshPort}, which the harness keeps open.
+     */
+    void seed(int credentials, int discoveries, int sshPort) throws Exception
+    {
+        this.sshPort = sshPort;
+
+        username = "loadtest";
+
+        password = "loadtest-password";
+
+        var user = new JsonObject().put("username", username).put("password", password);
+
+        send("POST", "/api/users/register", user, false);
+
+        var login = send("POST", "/api/users/login", user, false);
+
+        token = login.getJsonObject("data").getString("token");
+
+        for (var i = 0; i < credentials; i++)
+        {
+            send("POST", "/api/secured/credentials/", credential("seed-" + i), true);
+        }
+
+        credentialIds = ids("/api/secured/credentials/?limit=1000");
+
+        for (var i = 0; i < discoveries; i++)
+        {
+            send("POST", "/api/secured/discoveries/", discovery(i), true);
+        }
+
+        discoveryIds = ids("/api/secured/discoveries/?limit=1000");
+
+        if (credentialIds.isEmpty() || discoveryIds.isEmpty())
+        {
+            throw new IllegalStateException("Seeding created no credentials or discoveries");
+        }
+    }
+
+    /**
+     * Drives the mix at {@code rps} for {@code duration} and returns per-operation statistics, plus an "all" entry.
+     */
+    JsonObject run(int rps, Duration duration) throws InterruptedException
+    {
+        var recorders = new LinkedHashMap<String, Recorder>();
+
+        for (var op : mix.keySet())
+        {
+            recorders.put(op, new Recorder());
+        }
+
+        var total = rps * duration.toSeconds();
+
+        var intervalNanos = TimeUnit.SECONDS.toNanos(1) / rps;
+
+        var start = System.nanoTime();
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            for (long i = 0; i < total; i++)
+            {
+                var scheduledAt = start + i * intervalNanos;
+
+                var delay = scheduledAt - System.nanoTime();
+
+                if (delay > 0)
+                {
+                    LockSupport.parkNanos(delay);
+                }
+
+                var op = pickOperation();
+
+                var request = buildRequest(op);
+
+                var recorder = recorders.get(op);
+
+                executor.execute(() ->
+                {
+                    var ok = false;
+
+                    try
+                    {
+                        var status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+
+                        ok = status >= 200 && status < 300;
+                    }
+                    catch (Exception ignored)
+                    {
+                        // Counted as an error below
+                    }
+
+                    recorder.record(System.nanoTime() - scheduledAt, ok);
+                });
+            }
+        }
+
+        var elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        var operations = new JsonObject();
+
+        var all = new Recorder();
+
+        recorders.forEach((op, recorder) ->
+        {
+            operations.put(op, recorder.summary(elapsedSeconds));
+
+            all.addAll(recorder);
+        });
+
+        return new JsonObject()
+                .put("targetRps", rps)
+                .put("durationSeconds", elapsedSeconds)
+                .put("all", all.summary(elapsedSeconds))
+                .put("operations", operations);
+    }
+
+    private String pickOperation()
+    {
+        var totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+
+        var pick = random.nextInt(totalWeight);
+
+        for (var entry : mix.entrySet())
+        {
+            pick -= entry.getValue();
+
+            if (pick < 0)
+            {
+                return entry.getKey();
+            }
+        }
+
+        throw new IllegalStateException("Empty operation mix");
+    }
+
+    private HttpRequest buildRequest(String op)
+    {
+        return switch (op)
+        {
+            case "register" -> request("POST", "/api/users/register", new JsonObject()
+                    .put("username", "lt-" + System.nanoTime() + "-" + registrations.incrementAndGet())
+                    .put("password", password), false);
+
+            case "login" -> request("POST", "/api/users/login", new JsonObject()
+                    .put("username", username)
+                    .put("password", password), false);
+
+            case "credentialList" -> request("GET", "/api/secured/credentials/?limit=100", null, true);
+
+            case "credentialGet" -> request("GET", "/api/secured/credentials/" + pick(credentialIds), null, true);
+
+            case "credentialCreate" -> request("POST", "/api/secured/credentials/",
+                    credential("lt-" + random.nextInt(Integer.MAX_VALUE)), true);
+
+            case "discoveryList" -> request("GET", "/api/secured/discoveries/?limit=100", null, true);
+
+            case "discoveryGet" -> request("GET", "/api/secured/discoveries/" + pick(discoveryIds), null, true);
+
+            case "discoveryCreate" -> request("POST", "/api/secured/discoveries/",
+                    discovery(random.nextInt(256)), true);
+
+            case "discoveryRun" -> request("POST", "/api/secured/discoveries/" + pick(discoveryIds) + "/run",
+                    new JsonObject(), true);
+
+            default -> throw new IllegalArgumentException("Unknown operation: " + op);
+        };
+    }
+
+    private JsonObject credential(String name)
+    {
+        return new JsonObject()
+                .put("name", name)
+                .put("type", "SSH")
+                .put("attributes", new JsonObject().put("username", "admin").put("password", "admin"));
+    }
+
+    private JsonObject discovery(int index)
+    {
+        return new JsonObject()
+                .put("name", "lt-discovery-" + index)
+                .put("ip", "127.0." + (index & 255) + ".0/28")
+                .put("port", sshPort)
+                .put("credential_ids", new JsonArray().add(pick(credentialIds)));
+    }
+
+    private int pick(List<Integer> ids)
+    {
+        return ids.get(random.nextInt(ids.size()));
+    }
+
+    private List<Integer> ids(String path) throws Exception
+    {
+        var ids = new ArrayList<Integer>();
+
+        for (var item : send("GET", path, null, true).getJsonObject("data").getJsonArray("items"))
+        {
+            ids.add(((JsonObject) item).getInteger("id"));
+        }
+
+        return ids;
+    }
+
+    private JsonObject send(String method, String path, JsonObject body, boolean secured) throws Exception
+    {
+        var response = client.send(request(method, path, body, secured), HttpResponse.BodyHandlers.ofString());
+
+        var json = new JsonObject(response.body());
+
+        if (response.statusCode() >= 400 && !"/api/users/register".equals(path))
+        {
+            throw new IllegalStateException(method + " " + path + " failed with " + response.statusCode() + ": "
+                    + json.getString("message"));
+        }
+
+        return json;
+    }
+
+    private HttpRequest request(String method, String path, JsonObject body, boolean secured)
+    {
+        var builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(REQUEST_TIMEOUT)
+                .method(method, body != null
+                        ? HttpRequest.BodyPublishers.ofString(body.encode())
+                        : HttpRequest.BodyPublishers.noBody())
+                .header("Content-Type", "application/json");
+
+        if (secured)
+        {
+            builder.header("Authorization", "Bearer " + token);
+        }
+
+        return builder.build();
+    }
+
+    // Latencies in microseconds, kept whole so percentiles are exact
+    private static final class Recorder
+    {
+        private long[] latencies = new long[1024];
+
+        private int count;
+
+        private int errors;
+
+        synchronized void record(long nanos, boolean ok)
+        {
+            if (count == latencies.length)
+            {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+
+            latencies[count++] = nanos / 1000;
+
+            if (!ok)
+            {
+                errors++;
+            }
+        }
+
+        synchronized void addAll(Recorder other)
+        {
+            for (var i = 0; i < other.count; i++)
+            {
+                if (count == latencies.length)
+                {
+                    latencies = Arrays.copyOf(latencies, count * 2);
+                }
+
+                latencies[count++] = other.latencies[i];
+            }
+
+            errors += other.errors;
+        }
+
+        synchronized JsonObject summary(double elapsedSeconds)
+        {
+            var sorted = Arrays.copyOf(latencies, count);
+
+            Arrays.sort(sorted);
+
+            return new JsonObject()
+                    .put("requests", count)
+                    .put("errors", errors)
+                    .put("errorRate", count > 0 ? (double) errors / count : 0.0)
+                    .put("achievedRps", count / elapsedSeconds)
+                    .put("p50Ms", percentile(sorted, 0.50))
+                    .put("p99Ms", percentile(sorted, 0.99))
+                    .put("maxMs", count > 0 ? sorted[count - 1] / 1000.0 : 0.0);
+        }
+
+        private static double percentile(long[] sorted, double quantile)
+        {
+            if (sorted.length == 0)
+            {
+                return 0.0;
+            }
+
+            var index = (int) Math.ceil(quantile * sorted.length) - 1;
+
+            return sorted[Math.max(index, 0)] / 1000.0;
+        }
+    }
+}
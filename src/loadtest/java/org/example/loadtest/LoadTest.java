@@ -0,0 +1,249 @@
+package org.example.loadtest;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.example.Main;
+import org.example.utils.BlockingExecutor;
+import org.example.utils.ConfigLoader;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Boots the service in-process with fake fping and plugin executables, seeds it, then drives the request mix at
+ * each requested rate in turn and prints p50/p99 and error rates per operation. Stepping through increasing rates
+ * shows where latency and errors start to climb.
+ *
+ * <p>Options (all {@code --name value}):
+ * <ul>
+ *   <li>{@code rps}: comma-separated request rates, one stage each (default 25,50,100)</li>
+ *   <li>{@code duration}: seconds per stage (default 30)</li>
+ *   <li>{@code mix}: {@code op=weight} pairs (default below)</li>
+ *   <li>{@code pluginLatencyMs}, {@code fpingLatencyMs}, {@code alivePercent}: fake executable behaviour</li>
+ *   <li>{@code credentials}, {@code discoveries}: rows seeded before the first stage</li>
+ *   <li>{@code embeddedDb}: true to skip the local Postgres and always use the embedded one</li>
+ *   <li>{@code report}: path of the JSON report (default target/loadtest-report.json)</li>
+ *   <li>{@code seed}: random seed for the request sequence (default 42)</li>
+ * </ul>
+ */
+public class LoadTest
+{
+    private static final String DEFAULT_MIX = "login=1,register=1,credentialList=4,credentialGet=6,"
+            + "credentialCreate=2,discoveryList=3,discoveryGet=4,discoveryCreate=1,discoveryRun=1";
+
+    public static void main(String[] args) throws Exception
+    {
+        var options = parseOptions(args);
+
+        var vertx = Vertx.vertx();
+
+        var config = ConfigLoader.load(vertx).toCompletionStage().toCompletableFuture().get();
+
+        try (var database = TestDatabase.open(vertx, config.getJsonObject("db"), options.getBoolean("embeddedDb")))
+        {
+            var httpPort = freePort();
+
+            var sshServer = vertx.createNetServer()
+                    .connectHandler(socket -> socket.close())
+                    .listen(0, "0.0.0.0")
+                    .toCompletionStage().toCompletableFuture().get();
+
+            configure(config, options, database.config(), httpPort);
+
+            Main.start(vertx, config).toCompletionStage().toCompletableFuture().get();
+
+            var generator = new LoadGenerator("http://localhost:" + httpPort, parseMix(options.getString("mix")),
+                    options.getLong("seed"));
+
+            generator.seed(options.getInteger("credentials"), options.getInteger("discoveries"), sshServer.actualPort());
+
+            var stages = new JsonArray();
+
+            for (var rps : options.getString("rps").split(","))
+            {
+                var stage = generator.run(Integer.parseInt(rps.trim()), Duration.ofSeconds(options.getLong("duration")));
+
+                print(stage);
+
+                stages.add(stage);
+            }
+
+            var report = Path.of(options.getString("report"));
+
+            Files.createDirectories(report.toAbsolutePath().getParent());
+
+            Files.writeString(report, new JsonObject()
+                    .put("options", options)
+                    .put("stages", stages)
+                    .encodePrettily());
+
+            System.out.println("Report written to " + report.toAbsolutePath());
+        }
+        finally
+        {
+            BlockingExecutor.shared(vertx).close();
+
+            vertx.close().toCompletionStage().toCompletableFuture().get();
+        }
+    }
+
+    private static void configure(JsonObject config, JsonObject options, JsonObject dbConfig, int httpPort)
+            throws IOException
+    {
+        config.put("db", dbConfig.copy().put("preparedStatementCacheSize",
+                config.getJsonObject("db", new JsonObject()).getInteger("preparedStatementCacheSize", 256)));
+
+        config.put("http.port", httpPort);
+
+        // No scrape listener, so a harness run never collides with a service on the same host
+        config.put("metrics", new JsonObject().put("port", 0));
+
+        // Access tokens must outlive the whole run
+        config.getJsonObject("jwt").put("expirationMillis", 24 * 3600 * 1000L);
+
+        var pluginCommand = new JsonArray()
+                .add(Path.of(System.getProperty("java.home"), "bin", "java").toString())
+                .add("-cp")
+                .add(System.getProperty("java.class.path"))
+                .add(FakePlugin.class.getName())
+                .add(String.valueOf(options.getLong("pluginLatencyMs")));
+
+        if (!config.containsKey("discovery"))
+        {
+            config.put("discovery", new JsonObject());
+        }
+
+        config.getJsonObject("discovery")
+                .put("livenessProbe", "fping")
+                .put("fpingCommand", fakeFping(options).toString())
+                .put("pluginMode", "pool")
+                .put("pluginCommand", pluginCommand);
+
+        // Keep the scheduler from starting saved discoveries on its own during a stage
+        config.put("scheduler", config.getJsonObject("scheduler", new JsonObject()).copy()
+                .put("pollIntervalMs", 24 * 3600 * 1000L));
+    }
+
+    private static Path fakeFping(JsonObject options) throws IOException
+    {
+        String template;
+
+        try (var in = LoadTest.class.getResourceAsStream("/fake-fping.sh"))
+        {
+            template = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        var latencyMs = options.getLong("fpingLatencyMs");
+
+        var script = template
+                .replace("@DELAY_SECONDS@", String.format(Locale.ROOT, "%.3f", latencyMs / 1000.0))
+                .replace("@ALIVE_PERCENT@", String.valueOf(options.getInteger("alivePercent")))
+                .replace("@RTT_MS@", String.format(Locale.ROOT, "%.2f", Math.max(latencyMs, 1) / 10.0));
+
+        var path = Files.createTempFile("fake-fping", ".sh", PosixFilePermissions.asFileAttribute(
+                PosixFilePermissions.fromString("rwx------")));
+
+        path.toFile().deleteOnExit();
+
+        return Files.writeString(path, script);
+    }
+
+    private static void print(JsonObject stage)
+    {
+        System.out.printf(Locale.ROOT, "%n== %d rps for %.0fs ==%n", stage.getInteger("targetRps"),
+                stage.getDouble("durationSeconds"));
+
+        System.out.printf(Locale.ROOT, "%-18s %9s %8s %9s %10s %10s %10s%n",
+                "operation", "requests", "errors", "rps", "p50 ms", "p99 ms", "max ms");
+
+        var operations = stage.getJsonObject("operations");
+
+        for (var op : operations.fieldNames())
+        {
+            printRow(op, operations.getJsonObject(op));
+        }
+
+        printRow("all", stage.getJsonObject("all"));
+    }
+
+    private static void printRow(String op, JsonObject stats)
+    {
+        System.out.printf(Locale.ROOT, "%-18s %9d %7.2f%% %9.1f %10.2f %10.2f %10.2f%n", op,
+                stats.getInteger("requests"), stats.getDouble("errorRate") * 100, stats.getDouble("achievedRps"),
+                stats.getDouble("p50Ms"), stats.getDouble("p99Ms"), stats.getDouble("maxMs"));
+    }
+
+    private static JsonObject parseOptions(String[] args)
+    {
+        var options = new JsonObject()
+                .put("rps", "25,50,100")
+                .put("duration", 30L)
+                .put("mix", DEFAULT_MIX)
+                .put("pluginLatencyMs", 50L)
+                .put("fpingLatencyMs", 20L)
+                .put("alivePercent", 80)
+                .put("credentials", 20)
+                .put("discoveries", 10)
+                .put("embeddedDb", false)
+                .put("report", "target/loadtest-report.json")
+                .put("seed", 42L);
+
+        for (var i = 0; i + 1 < args.length; i += 2)
+        {
+            var name = args[i].replaceFirst("^--", "");
+
+            var current = options.getValue(name);
+
+            if (current == null)
+            {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+
+            var value = args[i + 1];
+
+            options.put(name, switch (current)
+            {
+                case Long l -> (Object) Long.parseLong(value);
+
+                case Integer n -> Integer.parseInt(value);
+
+                case Boolean b -> Boolean.parseBoolean(value);
+
+                default -> value;
+            });
+        }
+
+        return options;
+    }
+
+    private static Map<String, Integer> parseMix(String mix)
+    {
+        var weights = new LinkedHashMap<String, Integer>();
+
+        for (var entry : mix.split(","))
+        {
+            var parts = entry.trim().split("=");
+
+            weights.put(parts[0], Integer.parseInt(parts[1]));
+        }
+
+        return weights;
+    }
+
+    private static int freePort() throws IOException
+    {
+        try (var socket = new ServerSocket(0))
+        {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.example.loadtest;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.pgclient.PgBuilder;
+import io.vertx.pgclient.PgConnectOptions;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The database the service under test talks to: the Postgres from the "db" config block when it answers, otherwise
+ * an embedded Postgres started from bundled binaries (no Docker needed). The schema is applied either way.
+ */
+final class TestDatabase implements AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger(TestDatabase.class);
+
+    private final EmbeddedPostgres embedded;
+
+    private final JsonObject config;
+
+    private TestDatabase(EmbeddedPostgres embedded, JsonObject config)
+    {
+        this.embedded = embedded;
+
+        this.config = config;
+    }
+
+    static TestDatabase open(Vertx vertx, JsonObject dbConfig, boolean forceEmbedded) throws Exception
+    {
+        TestDatabase database = null;
+
+        if (!forceEmbedded && dbConfig != null && execute(vertx, dbConfig, "SELECT 1"))
+        {
+            logger.warn("Using local Postgres at {}:{}", dbConfig.getString("host"), dbConfig.getInteger("port"));
+
+            database = new TestDatabase(null, dbConfig);
+        }
+        else
+        {
+            var embedded = EmbeddedPostgres.start();
+
+            logger.warn("Local Postgres not available, started embedded Postgres on port {}", embedded.getPort());
+
+            database = new TestDatabase(embedded, new JsonObject()
+                    .put("host", "localhost")
+                    .put("port", embedded.getPort())
+                    .put("database", "postgres")
+                    .put("user", "postgres")
+                    .put("password", "postgres")
+                    .put("poolSize", dbConfig != null ? dbConfig.getInteger("poolSize", 5) : 5));
+        }
+
+        if (!execute(vertx, database.config, schema()))
+        {
+            database.close();
+
+            throw new IllegalStateException("Failed to apply the load-test schema");
+        }
+
+        return database;
+    }
+
+    JsonObject config()
+    {
+        return config;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (embedded != null)
+        {
+            embedded.close();
+        }
+    }
+
+    private static boolean execute(Vertx vertx, JsonObject dbConfig, String sql)
+    {
+        var connectOptions = new PgConnectOptions()
+                .setHost(dbConfig.getString("host"))
+                .setPort(dbConfig.getInteger("port"))
+                .setDatabase(dbConfig.getString("database"))
+                .setUser(dbConfig.getString("user"))
+                .setPassword(dbConfig.getString("password"))
+                .setConnectTimeout(3000);
+
+        var pool = PgBuilder.pool().connectingTo(connectOptions).using(vertx).build();
+
+        try
+        {
+            pool.query(sql).execute().toCompletionStage().toCompletableFuture().get();
+
+            return true;
+        }
+        catch (Exception e)
+        {
+            logger.warn("Query against {}:{} failed: {}", dbConfig.getString("host"), dbConfig.getInteger("port"),
+                    e.getMessage());
+
+            return false;
+        }
+        finally
+        {
+            pool.close();
+        }
+    }
+
+    private static String schema() throws IOException
+    {
+        try (var in = TestDatabase.class.getResourceAsStream("/schema.sql"))
+        {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+#!/bin/sh
+# Stand-in for "fping -q -a -e -r 1 <ips>". After a fixed delay it reports every address whose last octet modulo
+# 100 is below the alive percentage, so the same range always yields the same live hosts.
+sleep @DELAY_SECONDS@
+
+for arg in "$@"
+do
+    case "$arg" in
+        -*|1) continue ;;
+    esac
+
+    octet=${arg##*.}
+
+    if [ $((octet % 100)) -lt @ALIVE_PERCENT@ ]
+    then
+        echo "$arg (@RTT_MS@ ms)"
+    fi
+done
@@ -0,0 +1,38 @@
+-- Tables the service expects; applied with IF NOT EXISTS so a local database that already has them is left as is
+CREATE TABLE IF NOT EXISTS users
+(
+    id       SERIAL PRIMARY KEY,
+    username VARCHAR(255) NOT NULL UNIQUE,
+    password VARCHAR(255) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS credentials
+(
+    id         SERIAL PRIMARY KEY,
+    name       VARCHAR(255) NOT NULL,
+    type       VARCHAR(32)  NOT NULL,
+    attributes JSONB        NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS discoveries
+(
+    id                SERIAL PRIMARY KEY,
+    name              VARCHAR(255),
+    ip                VARCHAR(255) NOT NULL,
+    port              INTEGER      NOT NULL,
+    credential_ids    JSONB        NOT NULL,
+    schedule_interval INTEGER,
+    priority          INTEGER,
+    last_run_at       BIGINT
+);
+
+CREATE TABLE IF NOT EXISTS discovery_results
+(
+    id           SERIAL PRIMARY KEY,
+    discovery_id INTEGER     NOT NULL,
+    job_id       VARCHAR(64) NOT NULL,
+    ip           VARCHAR(64) NOT NULL,
+    status       VARCHAR(32) NOT NULL,
+    result       TEXT,
+    created_at   TIMESTAMPTZ NOT NULL DEFAULT now()
+);
@@ -2,6 +2,7 @@ package org.example.ApiServer;
 
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Promise;
+import io.vertx.core.http.HttpServerOptions;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.handler.BodyHandler;
 import io.vertx.ext.web.handler.JWTAuthHandler;
@@ -40,7 +41,11 @@ public class HttpServer extends AbstractVerticle
 
         var router = setupRouter();
 
-        vertx.createHttpServer()
+        // gzip/deflate whenever the client's Accept-Encoding allows it
+        var options = new HttpServerOptions()
+                .setCompressionSupported(true);
+
+        vertx.createHttpServer(options)
                 .requestHandler(router)
                 .listen(port)
                 .onSuccess(server -> startPromise.complete())
@@ -67,7 +72,22 @@ public class HttpServer extends AbstractVerticle
         var jwtHandler = JWTAuthHandler.create(jwtUtil.getAuthProvider());
 
         router.route("/api/secured/*")
-                .handler(jwtHandler);
+                .handler(jwtHandler)
+                .handler(ctx ->
+                {
+                    // Refresh tokens are only good for /api/users/refresh
+                    if (JwtUtil.isRefreshToken(ctx.user()))
+                    {
+                        ApiResponse.error(ctx, "Access token required", 401);
+                        return;
+                    }
+
+                    ctx.next();
+                });
+
+        // Token verification cache counters
+        router.get("/api/secured/auth/stats")
+                .handler(ctx -> ApiResponse.success(ctx, jwtUtil.verificationStats(), "Token verification stats", 200));
 
         // Credential routes
         var credentialRoutes = new CredentialRoutes(sqlClient);
@@ -0,0 +1,66 @@
+package org.example.ApiServer;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.ext.web.Router;
+import io.vertx.micrometer.PrometheusScrapingHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Serves the Prometheus scrape endpoint at {@code /metrics} on its own listener, kept off the public API port.
+ * Config: "host" (default 127.0.0.1), "port" and an optional "token" that scrapers must send as a bearer token.
+ */
+public class MetricsServer extends AbstractVerticle
+{
+    private static final Logger logger = LoggerFactory.getLogger(MetricsServer.class);
+
+    @Override
+    public void start(Promise<Void> startPromise)
+    {
+        var host = config().getString("host", "127.0.0.1");
+
+        var port = config().getInteger("port");
+
+        var token = config().getString("token", "");
+
+        var router = Router.router(vertx);
+
+        var route = router.get("/metrics");
+
+        if (!token.isEmpty())
+        {
+            var expected = ("Bearer " + token).getBytes(StandardCharsets.UTF_8);
+
+            route.handler(ctx ->
+            {
+                var header = ctx.request().getHeader("Authorization");
+
+                // Constant-time comparison so the token cannot be guessed byte by byte from response times
+                if (header == null || !MessageDigest.isEqual(expected, header.getBytes(StandardCharsets.UTF_8)))
+                {
+                    ctx.response().setStatusCode(401).end();
+                    return;
+                }
+
+                ctx.next();
+            });
+        }
+
+        route.handler(PrometheusScrapingHandler.create());
+
+        vertx.createHttpServer()
+                .requestHandler(router)
+                .listen(port, host)
+                .onSuccess(server ->
+                {
+                    logger.info("Metrics available at http://{}:{}/metrics", host, server.actualPort());
+
+                    startPromise.complete();
+                })
+                .onFailure(startPromise::fail);
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.Engine;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Runs an asynchronous task over a list of items with at most {@code limit} tasks in flight.
+ * Results are returned in the order of the input items; tasks are expected to recover their own failures.
+ */
+public final class BoundedFanOut
+{
+    private BoundedFanOut()
+    {
+    }
+
+    public static <T, R> Future<List<R>> run(List<T> items, int limit, Function<T, Future<R>> task)
+    {
+        if (items.isEmpty())
+        {
+            return Future.succeededFuture(List.of());
+        }
+
+        var results = new Object[items.size()];
+
+        var next = new AtomicInteger();
+
+        var lanes = new ArrayList<Future<Void>>();
+
+        for (var i = 0; i < Math.min(Math.max(limit, 1), items.size()); i++)
+        {
+            lanes.add(runLane(items, next, results, task));
+        }
+
+        return Future.all(lanes)
+                .map(v ->
+                {
+                    @SuppressWarnings("unchecked")
+                    var list = (List<R>) Arrays.asList(results);
+
+                    return list;
+                });
+    }
+
+    private static <T, R> Future<Void> runLane(List<T> items, AtomicInteger next, Object[] results, Function<T, Future<R>> task)
+    {
+        var lane = Promise.<Void>promise();
+
+        advance(items, next, results, task, lane);
+
+        return lane.future();
+    }
+
+    // Tasks that are already complete (cache hits) are consumed in the loop; only a pending task re-enters from its
+    // callback, so a long run of synchronous results cannot grow the stack
+    private static <T, R> void advance(List<T> items, AtomicInteger next, Object[] results, Function<T, Future<R>> task,
+                                       Promise<Void> lane)
+    {
+        while (true)
+        {
+            var index = next.getAndIncrement();
+
+            if (index >= items.size())
+            {
+                lane.complete();
+                return;
+            }
+
+            var future = task.apply(items.get(index));
+
+            if (!future.isComplete())
+            {
+                future.onComplete(ar ->
+                {
+                    if (ar.failed())
+                    {
+                        lane.fail(ar.cause());
+                        return;
+                    }
+
+                    results[index] = ar.result();
+
+                    advance(items, next, results, task, lane);
+                });
+
+                return;
+            }
+
+            if (future.failed())
+            {
+                lane.fail(future.cause());
+                return;
+            }
+
+            results[index] = future.result();
+        }
+    }
+}
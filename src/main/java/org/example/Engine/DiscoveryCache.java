@@ -0,0 +1,126 @@
+package org.example.Engine;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import org.example.services.CredentialCache;
+import org.example.utils.TtlLruCache;
+
+/**
+ * Per-process cache of discovery stage outcomes shared by every {@link DiscoveryEngine} instance: host liveness
+ * keyed by ip, port state keyed by (ip, port) and plugin results keyed by (ip, port, credential ids).
+ * Positive outcomes, dead hosts and closed ports each have their own TTL; a TTL of 0 disables that part of the
+ * cache. Filtered ports are never cached since a timeout says little about the next attempt, and plugin results are
+ * dropped whenever credentials change (see {@link CredentialCache#INVALIDATE_ADDRESS}).
+ */
+public class DiscoveryCache implements Shareable
+{
+    private static final String SHARED_MAP = "discovery.cache";
+
+    private final TtlLruCache<String, Boolean> liveness;
+
+    private final TtlLruCache<String, PortScanner.PortState> ports;
+
+    private final TtlLruCache<String, JsonObject> profiles;
+
+    private final long positiveTtlMs;
+
+    private final long deadHostTtlMs;
+
+    private final long closedPortTtlMs;
+
+    private DiscoveryCache(Vertx vertx, JsonObject config)
+    {
+        var maxEntries = config.getInteger("cacheMaxEntries", 65536);
+
+        this.liveness = new TtlLruCache<>(maxEntries);
+
+        this.ports = new TtlLruCache<>(maxEntries);
+
+        this.profiles = new TtlLruCache<>(maxEntries);
+
+        this.positiveTtlMs = config.getLong("cachePositiveTtlMs", 300000L);
+
+        this.deadHostTtlMs = config.getLong("cacheDeadHostTtlMs", 60000L);
+
+        this.closedPortTtlMs = config.getLong("cacheClosedPortTtlMs", 60000L);
+
+        // Profiles are keyed by credential ids, so an edited or deleted credential must not keep serving old results
+        vertx.eventBus().consumer(CredentialCache.INVALIDATE_ADDRESS, message -> profiles.clear());
+    }
+
+    public static DiscoveryCache shared(Vertx vertx, JsonObject config)
+    {
+        return (DiscoveryCache) vertx.sharedData()
+                .getLocalMap(SHARED_MAP)
+                .computeIfAbsent(SHARED_MAP, key -> new DiscoveryCache(vertx, config));
+    }
+
+    public Boolean liveness(String ip)
+    {
+        return liveness.get(ip);
+    }
+
+    public void putLiveness(String ip, boolean alive)
+    {
+        liveness.put(ip, alive, alive ? positiveTtlMs : deadHostTtlMs);
+    }
+
+    public PortScanner.PortState port(String ip, int port)
+    {
+        return ports.get(ip + ":" + port);
+    }
+
+    public void putPort(String ip, int port, PortScanner.PortState state)
+    {
+        if (state == PortScanner.PortState.FILTERED)
+        {
+            return;
+        }
+
+        ports.put(ip + ":" + port, state, state == PortScanner.PortState.OPEN ? positiveTtlMs : closedPortTtlMs);
+    }
+
+    public JsonObject profile(String ip, int port, JsonArray credentials)
+    {
+        var result = profiles.get(profileKey(ip, port, credentials));
+
+        return result != null ? result.copy() : null;
+    }
+
+    public void putProfile(String ip, int port, JsonArray credentials, JsonObject result)
+    {
+        profiles.put(profileKey(ip, port, credentials), result.copy(), positiveTtlMs);
+    }
+
+    public JsonObject stats()
+    {
+        return new JsonObject()
+                .put("liveness", liveness.stats())
+                .put("ports", ports.stats())
+                .put("profiles", profiles.stats());
+    }
+
+    private String profileKey(String ip, int port, JsonArray credentials)
+    {
+        var key = new StringBuilder(ip).append(':').append(port);
+
+        for (var credential : credentials)
+        {
+            key.append(':');
+
+            if (credential instanceof JsonObject object && object.getValue("id") != null)
+            {
+                key.append(object.getValue("id"));
+            }
+            else
+            {
+                // Credentials without an id are keyed by content so that different secrets never share an entry
+                key.append(String.valueOf(credential).hashCode());
+            }
+        }
+
+        return key.toString();
+    }
+}
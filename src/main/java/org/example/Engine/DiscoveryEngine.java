@@ -3,256 +3,606 @@ package org.example.Engine;
 import io.vertx.core.*;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import io.vertx.core.net.NetClientOptions;
+import org.example.utils.BlockingExecutor;
+import org.example.utils.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
+import java.util.function.Predicate;
+
+/**
+ * Sweeps ranges, scans ports and runs the discovery plugin for every live host with an open port.
+ *
+ * <p>By default ("pluginMode": "process") a plugin process is spawned per invocation. With "pluginBatchSize"
+ * above 1, the contexts of up to that many hosts (gathered for at most "pluginBatchLingerMs") go to one
+ * invocation, which must print a "results" array in context order; output that is not such an array turns
+ * batching off for the engine and the batch is rerun one process per host.
+ *
+ * <p>To keep long-lived plugin workers instead, build the plugin with {@code --serve} support, point
+ * "pluginCommand" at it (for example {@code ["./plugin/nms-plugin", "--serve"]}) and set "pluginMode" to "pool";
+ * "pluginPoolSize", "pluginTimeoutMs", "pluginHealthCheckMs" and "pluginBatchSize" tune the pool. If the pool
+ * cannot be started the engine logs it and falls back to spawning processes.
+ */
 public class DiscoveryEngine extends AbstractVerticle
 {
-    private static final String DISCOVERY_ADDRESS = "discovery";
+    private static final Logger logger = LoggerFactory.getLogger(DiscoveryEngine.class);
 
-    private static final Pattern IP_RANGE_PATTERN = Pattern.compile("(\\d+\\.\\d+\\.\\d+\\.)(\\d+)-(\\d+)");
+    public static final String DISCOVERY_ADDRESS = "discovery";
 
-    private static final int FPING_TIMEOUT_SECONDS = 30;
+    public static final String CACHE_STATS_ADDRESS = "discovery.cache.stats";
 
     private static final int PORT_SCAN_TIMEOUT_MS = 2000;
 
+    private static final int DEFAULT_PORT_SCAN_IN_FLIGHT = 256;
+
     private static final int PROCESS_TIMEOUT_SECONDS = 60;
 
+    private static final int DEFAULT_MAX_CONCURRENCY = 32;
+
+    private static final long DEFAULT_BATCH_LINGER_MS = 20;
+
+    private static final int DEFAULT_SWEEP_CHUNK_SIZE = 256;
+
+    private static final long DEFAULT_MAX_RANGE_SIZE = 1L << 20;
+
+    private static final String STAGE_METRIC = "nms.discovery.stage";
+
+    private int maxConcurrency;
+
+    private int sweepChunkSize;
+
+    private long maxRangeSize;
+
+    private PortScanner portScanner;
+
+    private LivenessProbe livenessProbe;
+
+    private String livenessStage;
+
+    private PluginWorkerPool pluginPool;
+
+    private PluginBatcher pluginBatcher;
+
+    // Cleared when a spawned plugin does not answer multi-context input, after which each host gets its own process
+    private volatile boolean processBatching = true;
+
+    private DiscoveryCache cache;
+
     @Override
     public void start(Promise<Void> startPromise)
     {
-        vertx.eventBus().consumer(DISCOVERY_ADDRESS, message ->
+        maxConcurrency = config().getInteger("maxConcurrency", DEFAULT_MAX_CONCURRENCY);
+
+        sweepChunkSize = config().getInteger("sweepChunkSize", DEFAULT_SWEEP_CHUNK_SIZE);
+
+        maxRangeSize = config().getLong("maxRangeSize", DEFAULT_MAX_RANGE_SIZE);
+
+        portScanner = new PortScanner(vertx,
+                config().getInteger("portScanInFlight", DEFAULT_PORT_SCAN_IN_FLIGHT),
+                config().getInteger("portScanTimeoutMs", PORT_SCAN_TIMEOUT_MS));
+
+        livenessProbe = LivenessProbe.create(vertx, config());
+
+        livenessStage = livenessProbe instanceof FpingLivenessProbe ? "fping" : "tcp_ping";
+
+        cache = DiscoveryCache.shared(vertx, config());
+
+        var batchSize = config().getInteger("pluginBatchSize", 1);
+
+        if (batchSize > 1)
         {
-            var request = (JsonObject) message.body();
+            pluginBatcher = new PluginBatcher(vertx, batchSize,
+                    config().getLong("pluginBatchLingerMs", DEFAULT_BATCH_LINGER_MS), this::sendBatch);
+        }
 
-            handleDiscoveryRequest(request)
-                    .onSuccess(message::reply)
-                    .onFailure(err -> message.reply(errorResponse(err.getMessage())));
-        });
+        var pluginStarted = Future.<Void>succeededFuture();
+
+        if ("pool".equals(config().getString("pluginMode", "process")))
+        {
+            pluginPool = new PluginWorkerPool(vertx, config());
 
-        startPromise.complete();
+            pluginStarted = pluginPool.start()
+                    .recover(err ->
+                    {
+                        logger.error("Plugin worker pool failed to start ({}), spawning plugin processes instead",
+                                err.getMessage());
+
+                        pluginPool.close();
+
+                        pluginPool = null;
+
+                        return Future.succeededFuture();
+                    });
+        }
+
+        pluginStarted
+                .onSuccess(v -> vertx.eventBus().consumer(DISCOVERY_ADDRESS, message ->
+                {
+                    var request = (JsonObject) message.body();
+
+                    handleDiscoveryRequest(request)
+                            .onSuccess(message::reply)
+                            .onFailure(err -> message.reply(errorResponse(err.getMessage())));
+                }))
+                .onSuccess(v -> vertx.eventBus().consumer(CACHE_STATS_ADDRESS, message -> message.reply(cache.stats())))
+                .<Void>mapEmpty()
+                .onComplete(startPromise);
+    }
+
+    @Override
+    public void stop(Promise<Void> stopPromise)
+    {
+        Future.all(portScanner.close(), livenessProbe.close(),
+                        pluginPool != null ? pluginPool.close() : Future.succeededFuture())
+                .<Void>mapEmpty()
+                .onComplete(stopPromise);
     }
 
     private Future<JsonObject> handleDiscoveryRequest(JsonObject request)
     {
-        var promise = Promise.<JsonObject>promise();
+        if (!"Discovery".equals(request.getString("requestType")))
+        {
+            return Future.failedFuture("Invalid request type");
+        }
+
+        var contexts = request.getJsonArray("contexts");
 
-        vertx.executeBlocking(blockingPromise ->
+        if (contexts == null || contexts.isEmpty())
         {
-            try
-            {
-                if (!"Discovery".equals(request.getString("requestType")))
-                {
-                    blockingPromise.fail("Invalid request type");
-                    return;
-                }
+            return Future.failedFuture("No discovery contexts provided");
+        }
 
-                var contexts = request.getJsonArray("contexts");
+        if (request.getBoolean("stream", false))
+        {
+            return Future.succeededFuture(startJob(request));
+        }
 
-                if (contexts == null || contexts.isEmpty())
-                {
-                    blockingPromise.fail("No discovery contexts provided");
-                    return;
-                }
+        var concurrency = request.getInteger("concurrency", maxConcurrency);
 
-                var context = contexts.getJsonObject(0);
+        if (contexts.size() == 1)
+        {
+            return handleContext(request, contexts.getJsonObject(0), concurrency);
+        }
 
-                var ipInput = context.getString("ip");
+        var contextList = new ArrayList<JsonObject>();
 
-                var port = context.getInteger("port");
+        for (var i = 0; i < contexts.size(); i++)
+        {
+            contextList.add(contexts.getJsonObject(i));
+        }
 
-                var credentials = context.getJsonArray("credentials");
+        // Contexts and the hosts within each share one budget, so fan-out mode never has more than about
+        // concurrency hosts in flight instead of one full budget per context
+        var contextLanes = Math.max(1, Math.min(concurrency, contextList.size()));
 
-                if (ipInput == null || port == null || credentials == null)
-                {
-                    blockingPromise.fail("Missing required fields");
-                    return;
-                }
+        var hostConcurrency = Math.max(1, concurrency / contextLanes);
 
-                var ips = expandIpRange(ipInput);
+        return BoundedFanOut.run(contextList, contextLanes, context ->
+                        handleContext(request, context, hostConcurrency)
+                                .otherwise(err -> errorResponse(err.getMessage()))
+                                .map(result -> result.put("range", context.getString("ip"))))
+                .map(results -> new JsonObject()
+                        .put("status", "success")
+                        .put("results", new JsonArray(results)));
+    }
 
-                if (ips.isEmpty())
-                {
-                    blockingPromise.fail("Invalid IP or range");
-                    return;
-                }
+    private Future<JsonObject> handleContext(JsonObject request, JsonObject context, int concurrency)
+    {
+        IpRange range;
 
-                var activeIps = performFping(ips);
+        try
+        {
+            range = parseContextRange(context);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return Future.failedFuture(e.getMessage());
+        }
 
-                if (activeIps.isEmpty())
-                {
-                    blockingPromise.fail("No active IPs found");
-                    return;
-                }
+        var port = context.getInteger("port");
 
-                var activeIp = activeIps.get(0);
+        var credentials = context.getJsonArray("credentials");
 
-                if (!scanPortBlocking(activeIp, port))
+        var fanOut = request.getBoolean("fanOut", false);
+
+        var activeIps = new ArrayList<String>();
+
+        return sweep(range.iterator(), ip ->
                 {
-                    blockingPromise.fail("Port " + port + " is not open on IP: " + activeIp);
-                    return;
-                }
+                    activeIps.add(ip);
 
-                var result = spawnDiscoveryProcess(activeIp, port, credentials);
+                    return fanOut;
+                })
+                .compose(v ->
+                {
+                    if (activeIps.isEmpty())
+                    {
+                        return Future.failedFuture("No active IPs found");
+                    }
 
-                blockingPromise.complete(result);
-            }
-            catch (Exception e)
-            {
-                blockingPromise.fail(e);
-            }
-        }, res ->
-        {
-            if (res.succeeded())
-            {
-                promise.complete((JsonObject) res.result());
-            }
-            else
-            {
-                promise.fail(res.cause());
-            }
-        });
+                    if (fanOut)
+                    {
+                        return discoverAll(activeIps, port, credentials, concurrency);
+                    }
 
-        return promise.future();
+                    return discoverHost(activeIps.get(0), port, credentials);
+                });
     }
 
-    private List<String> expandIpRange(String ipInput)
+    private JsonObject startJob(JsonObject request)
     {
-        var ips = new ArrayList<String>();
+        var contexts = request.getJsonArray("contexts");
+
+        var job = new DiscoveryJob(request.getString("jobId", UUID.randomUUID().toString()), vertx.eventBus(),
+                request.getInteger("concurrency", maxConcurrency));
 
-        var matcher = IP_RANGE_PATTERN.matcher(ipInput);
+        // Every context is swept before the job can complete, so hold it open until all sweeps are registered
+        job.sweepStarted();
 
-        if (matcher.matches())
+        for (var i = 0; i < contexts.size(); i++)
         {
-            var baseIp = matcher.group(1);
+            var context = contexts.getJsonObject(i);
 
-            var start = Integer.parseInt(matcher.group(2));
+            var rangeInput = context.getString("ip");
 
-            var end = Integer.parseInt(matcher.group(3));
+            IpRange range;
 
-            if (start <= end && start >= 0 && end <= 255)
+            try
+            {
+                range = parseContextRange(context);
+            }
+            catch (IllegalArgumentException e)
             {
-                for (var i = start; i <= end; i++)
+                job.publishError(rangeInput, e.getMessage());
+
+                continue;
+            }
+
+            var port = context.getInteger("port");
+
+            var credentials = context.getJsonArray("credentials");
+
+            job.sweepStarted();
+
+            var addresses = range.iterator();
+
+            // Ends the sweep at the next chunk boundary once the job is cancelled, even if no host answers
+            var untilCancelled = new Iterator<String>()
+            {
+                @Override
+                public boolean hasNext()
                 {
-                    ips.add(baseIp + i);
+                    return job.active() && addresses.hasNext();
                 }
-            }
-        }
-        else if (isValidIp(ipInput))
-        {
-            ips.add(ipInput);
+
+                @Override
+                public String next()
+                {
+                    return addresses.next();
+                }
+            };
+
+            sweep(untilCancelled, ip ->
+                    {
+                        job.offer(ip, () -> discoverHost(ip, port, credentials));
+
+                        return job.active();
+                    })
+                    .onFailure(err -> job.publishError(rangeInput, err.getMessage()))
+                    .onComplete(ar -> job.sweepFinished());
         }
 
-        return ips;
+        job.sweepFinished();
+
+        return new JsonObject()
+                .put("status", "accepted")
+                .put("jobId", job.id())
+                .put("address", job.address());
     }
 
-    private boolean isValidIp(String ip)
+    private IpRange parseContextRange(JsonObject context)
     {
-        var ipPattern = "^(\\d{1,3}\\.){3}\\d{1,3}$";
+        var ipInput = context.getString("ip");
+
+        if (ipInput == null || context.getInteger("port") == null || context.getJsonArray("credentials") == null)
+        {
+            throw new IllegalArgumentException("Missing required fields");
+        }
+
+        var range = expandIpRange(ipInput);
+
+        if (range.isEmpty())
+        {
+            throw new IllegalArgumentException("Invalid IP or range");
+        }
 
-        if (!ip.matches(ipPattern))
+        if (range.size() > maxRangeSize)
         {
-            return false;
+            throw new IllegalArgumentException("IP range of " + range.size() + " addresses exceeds the limit of " + maxRangeSize);
         }
 
-        return Arrays.stream(ip.split("\\."))
-                .allMatch(part ->
+        return range;
+    }
+
+    private Future<JsonObject> discoverAll(List<String> activeIps, int port, JsonArray credentials, int concurrency)
+    {
+        return BoundedFanOut.run(activeIps, concurrency, ip ->
+                        discoverHost(ip, port, credentials)
+                                .otherwise(err -> errorResponse(err.getMessage()))
+                                .map(result -> result.put("ip", ip)))
+                .map(results -> new JsonObject()
+                        .put("status", "success")
+                        .put("results", new JsonArray(results)));
+    }
+
+    private Future<JsonObject> discoverHost(String ip, int port, JsonArray credentials)
+    {
+        var cachedState = cache.port(ip, port);
+
+        var portState = cachedState != null
+                ? Future.succeededFuture(cachedState)
+                : Metrics.time(STAGE_METRIC, () -> portScanner.probe(ip, port), "stage", "port_scan")
+                        .onSuccess(state -> cache.putPort(ip, port, state));
+
+        return portState
+                .compose(state ->
                 {
-                    try
+                    if (state != PortScanner.PortState.OPEN)
                     {
-                        var num = Integer.parseInt(part);
-
-                        return num >= 0 && num <= 255;
+                        return Future.failedFuture("Port " + port + " is not open on IP: " + ip + " (" + state + ")");
                     }
-                    catch (NumberFormatException e)
+
+                    var cachedProfile = cache.profile(ip, port, credentials);
+
+                    if (cachedProfile != null)
                     {
-                        return false;
+                        return Future.succeededFuture(cachedProfile);
                     }
+
+                    return runPlugin(ip, port, credentials)
+                            .onSuccess(result -> cache.putProfile(ip, port, credentials, result));
                 });
     }
 
-    private List<String> performFping(List<String> ips) throws Exception
+    private Future<JsonObject> runPlugin(String ip, int port, JsonArray credentials)
     {
-        var activeIps = new ArrayList<String>();
+        return Metrics.time(STAGE_METRIC, () -> invokePlugin(ip, port, credentials), "stage", "plugin");
+    }
+
+    private Future<JsonObject> invokePlugin(String ip, int port, JsonArray credentials)
+    {
+        var context = discoveryContext(ip, port, credentials);
+
+        if (pluginBatcher == null || (pluginPool == null && !processBatching))
+        {
+            return pluginPool == null
+                    ? BlockingExecutor.shared(vertx).execute(() -> spawnDiscoveryProcess(context))
+                    : pluginPool.send(discoveryInput(new JsonArray().add(context))).compose(this::toHostResult);
+        }
+
+        return pluginBatcher.submit(context).compose(this::toHostResult);
+    }
+
+    private Future<JsonObject> toHostResult(JsonObject result)
+    {
+        return "error".equals(result.getString("status"))
+                ? Future.failedFuture(result.getString("message", "Plugin reported an error"))
+                : Future.succeededFuture(new JsonObject()
+                        .put("status", "success")
+                        .put("result", result.getValue("result")));
+    }
 
-        if (ips.isEmpty())
+    private Future<JsonArray> sendBatch(JsonArray contexts)
+    {
+        if (pluginPool == null)
         {
-            return activeIps;
+            return BlockingExecutor.shared(vertx).execute(() -> spawnBatchProcess(contexts))
+                    .compose(results -> results != null ? Future.succeededFuture(results) : spawnEach(contexts));
         }
 
-        var command = new ArrayList<String>();
+        return pluginPool.send(discoveryInput(contexts))
+                .compose(response -> "error".equals(response.getString("status"))
+                        ? Future.failedFuture(response.getString("message", "Plugin reported an error"))
+                        : Future.succeededFuture(response.getJsonArray("results")));
+    }
+
+    // Runs one plugin process for the whole batch; returns null if its output is not a results array per context
+    private JsonArray spawnBatchProcess(JsonArray contexts) throws Exception
+    {
+        if (contexts.size() == 1 || !processBatching)
+        {
+            return null;
+        }
 
-        command.add("fping");
+        var output = runPluginProcess(discoveryInput(contexts));
 
-        command.add("-q");
+        try
+        {
+            var results = new JsonObject(output).getJsonArray("results");
 
-        command.add("-a");
+            if (results != null && results.size() == contexts.size())
+            {
+                return results;
+            }
+        }
+        catch (RuntimeException e)
+        {
+            // Not JSON, handled below like any other unexpected output
+        }
 
-        command.add("-r");
+        logger.warn("Plugin did not answer a batch of {} contexts with a results array, spawning one process per host from now on",
+                contexts.size());
 
-        command.add("1");
+        processBatching = false;
 
-        command.addAll(ips);
+        return null;
+    }
 
-        var pb = new ProcessBuilder(command);
+    private Future<JsonArray> spawnEach(JsonArray contexts)
+    {
+        var results = new ArrayList<Future<JsonObject>>();
 
-        pb.redirectErrorStream(true);
+        for (var i = 0; i < contexts.size(); i++)
+        {
+            var context = contexts.getJsonObject(i);
 
-        var process = pb.start();
+            results.add(BlockingExecutor.shared(vertx).execute(() -> spawnDiscoveryProcess(context))
+                    .otherwise(err -> errorResponse(err.getMessage())));
+        }
 
-        try (var reader = new BufferedReader(new InputStreamReader(process.getInputStream())))
+        return Future.all(results).map(v ->
         {
-            String line;
+            var array = new JsonArray();
 
-            while ((line = reader.readLine()) != null)
+            results.forEach(result -> array.add(result.result()));
+
+            return array;
+        });
+    }
+
+    private JsonObject discoveryInput(JsonArray contexts)
+    {
+        return new JsonObject()
+                .put("requestType", "Discovery")
+                .put("contexts", contexts);
+    }
+
+    private JsonObject discoveryContext(String ip, int port, JsonArray credentials)
+    {
+        return new JsonObject()
+                .put("ip", ip)
+                .put("port", port)
+                .put("credentials", credentials);
+    }
+
+    private IpRange expandIpRange(String ipInput)
+    {
+        try
+        {
+            return IpRange.parse(ipInput);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IllegalArgumentException("Invalid IP or range: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the liveness probe over the range one chunk at a time, handing each live address to {@code onAlive}
+     * as soon as its chunk has been probed. The sweep stops after the current chunk once {@code onAlive}
+     * returns false.
+     */
+    private Future<Void> sweep(Iterator<String> addresses, Predicate<String> onAlive)
+    {
+        var done = Promise.<Void>promise();
+
+        sweepChunks(addresses, onAlive, done);
+
+        return done.future();
+    }
+
+    // Chunks whose probe is already complete (every address cached) are handled in the loop; only a pending probe
+    // re-enters from its callback, so a fully cached range cannot grow the stack
+    private void sweepChunks(Iterator<String> addresses, Predicate<String> onAlive, Promise<Void> done)
+    {
+        while (addresses.hasNext())
+        {
+            var chunk = new ArrayList<String>(sweepChunkSize);
+
+            var cachedAlive = new ArrayList<String>();
+
+            while (addresses.hasNext() && chunk.size() + cachedAlive.size() < sweepChunkSize)
             {
-                var ip = line.trim();
+                var ip = addresses.next();
 
-                if (!ip.isEmpty())
+                var alive = cache.liveness(ip);
+
+                if (alive == null)
                 {
-                    activeIps.add(ip);
+                    chunk.add(ip);
+                }
+                else if (alive)
+                {
+                    cachedAlive.add(ip);
                 }
             }
-        }
 
-        if (!process.waitFor(FPING_TIMEOUT_SECONDS, TimeUnit.SECONDS))
-        {
-            process.destroy();
+            var probed = Metrics.time(STAGE_METRIC, () -> livenessProbe.probe(chunk), "stage", livenessStage);
+
+            if (!probed.isComplete())
+            {
+                probed.onComplete(ar ->
+                {
+                    if (ar.failed())
+                    {
+                        done.fail(ar.cause());
+                    }
+                    else if (acceptChunk(cachedAlive, ar.result(), onAlive))
+                    {
+                        sweepChunks(addresses, onAlive, done);
+                    }
+                    else
+                    {
+                        done.complete();
+                    }
+                });
 
-            throw new RuntimeException("fping timed out");
+                return;
+            }
+
+            if (probed.failed())
+            {
+                done.fail(probed.cause());
+                return;
+            }
+
+            if (!acceptChunk(cachedAlive, probed.result(), onAlive))
+            {
+                break;
+            }
         }
 
-        return activeIps;
+        done.complete();
     }
 
-    private boolean scanPortBlocking(String ip, int port) throws Exception
+    private boolean acceptChunk(List<String> cachedAlive, List<LivenessProbe.Result> liveness, Predicate<String> onAlive)
     {
-        var promise = Promise.<Boolean>promise();
+        var proceed = true;
 
-        vertx.createNetClient(new NetClientOptions().setConnectTimeout(PORT_SCAN_TIMEOUT_MS))
-                .connect(port, ip, ar -> promise.complete(ar.succeeded()));
+        for (var ip : cachedAlive)
+        {
+            proceed &= onAlive.test(ip);
+        }
+
+        for (var result : liveness)
+        {
+            cache.putLiveness(result.ip(), result.alive());
+
+            if (result.alive())
+            {
+                proceed &= onAlive.test(result.ip());
+            }
+        }
 
-        return promise.future().toCompletionStage().toCompletableFuture().get();
+        return proceed;
     }
 
-    private JsonObject spawnDiscoveryProcess(String ip, int port, JsonArray credentials) throws Exception
+    private JsonObject spawnDiscoveryProcess(JsonObject context) throws Exception
     {
-        var processInput = new JsonObject()
-                .put("requestType", "Discovery")
-                .put("contexts", new JsonArray()
-                        .add(new JsonObject()
-                                .put("ip", ip)
-                                .put("port", port)
-                                .put("credentials", credentials)));
+        return new JsonObject()
+                .put("status", "success")
+                .put("result", runPluginProcess(discoveryInput(new JsonArray().add(context))));
+    }
 
+    private String runPluginProcess(JsonObject processInput) throws Exception
+    {
         var command = List.of("go", "run", "main.go", processInput.encode());
 
         var pb = new ProcessBuilder(command);
@@ -285,9 +635,7 @@ public class DiscoveryEngine extends AbstractVerticle
             throw new RuntimeException("Go process failed with exit code: " + process.exitValue());
         }
 
-        return new JsonObject()
-                .put("status", "success")
-                .put("result", output.toString());
+        return output.toString();
     }
 
     private JsonObject errorResponse(String message)
@@ -0,0 +1,200 @@
+package org.example.Engine;
+
+import io.vertx.core.Future;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.function.Supplier;
+
+/**
+ * Streaming discovery job. Live hosts are offered as the liveness sweep finds them and are profiled with at most
+ * {@code concurrency} hosts in flight; every finished host is published to {@link #address()} straight away,
+ * followed by a single "complete" event once the sweep has ended and all hosts are done.
+ * A request on {@link #cancelAddress} drops the queued hosts and stops the sweep after its current chunk; the
+ * "complete" event then follows once the hosts already in flight are done, flagged {@code "cancelled": true}.
+ * Not thread-safe: use it from the owning verticle's context only.
+ */
+public class DiscoveryJob
+{
+    private static final String ADDRESS_PREFIX = "discovery.job.";
+
+    private final String id;
+
+    private final EventBus eventBus;
+
+    private final int concurrency;
+
+    private final MessageConsumer<Object> cancelConsumer;
+
+    private record Host(String ip, Supplier<Future<JsonObject>> task)
+    {
+    }
+
+    private final Queue<Host> queued = new ArrayDeque<>();
+
+    private int inFlight;
+
+    private int openSweeps;
+
+    private long succeeded;
+
+    private long failed;
+
+    private boolean cancelled;
+
+    private boolean completed;
+
+    private final long startedAt = System.currentTimeMillis();
+
+    public DiscoveryJob(String id, EventBus eventBus, int concurrency)
+    {
+        this.id = id;
+
+        this.eventBus = eventBus;
+
+        this.concurrency = Math.max(1, concurrency);
+
+        this.cancelConsumer = eventBus.consumer(cancelAddress(id), message ->
+        {
+            cancel();
+
+            message.reply(new JsonObject().put("jobId", id).put("cancelled", true));
+        });
+    }
+
+    public static String address(String jobId)
+    {
+        return ADDRESS_PREFIX + jobId;
+    }
+
+    public static String cancelAddress(String jobId)
+    {
+        return ADDRESS_PREFIX + jobId + ".cancel";
+    }
+
+    public String id()
+    {
+        return id;
+    }
+
+    public String address()
+    {
+        return address(id);
+    }
+
+    public void sweepStarted()
+    {
+        openSweeps++;
+    }
+
+    public void sweepFinished()
+    {
+        openSweeps--;
+
+        completeIfDone();
+    }
+
+    /**
+     * False once the job has been cancelled; sweeps use it to stop early.
+     */
+    public boolean active()
+    {
+        return !cancelled;
+    }
+
+    public void cancel()
+    {
+        if (cancelled)
+        {
+            return;
+        }
+
+        cancelled = true;
+
+        queued.clear();
+
+        completeIfDone();
+    }
+
+    public void offer(String ip, Supplier<Future<JsonObject>> task)
+    {
+        if (cancelled)
+        {
+            return;
+        }
+
+        queued.add(new Host(ip, task));
+
+        pump();
+    }
+
+    public void publishError(String range, String message)
+    {
+        eventBus.publish(address(), new JsonObject()
+                .put("type", "error")
+                .put("jobId", id)
+                .put("range", range)
+                .put("message", message));
+    }
+
+    private void pump()
+    {
+        while (inFlight < concurrency && !queued.isEmpty())
+        {
+            var host = queued.poll();
+
+            inFlight++;
+
+            host.task().get()
+                    .onComplete(ar ->
+                    {
+                        inFlight--;
+
+                        var event = ar.succeeded()
+                                ? ar.result().copy()
+                                : new JsonObject().put("status", "error").put("message", ar.cause().getMessage());
+
+                        if (ar.succeeded())
+                        {
+                            succeeded++;
+                        }
+                        else
+                        {
+                            failed++;
+                        }
+
+                        eventBus.publish(address(), event
+                                .put("type", "host")
+                                .put("jobId", id)
+                                .put("ip", host.ip()));
+
+                        pump();
+
+                        completeIfDone();
+                    });
+        }
+    }
+
+    private void completeIfDone()
+    {
+        if (completed || openSweeps > 0 || inFlight > 0 || !queued.isEmpty())
+        {
+            return;
+        }
+
+        completed = true;
+
+        cancelConsumer.unregister();
+
+        eventBus.publish(address(), new JsonObject()
+                .put("type", "complete")
+                .put("jobId", id)
+                .put("cancelled", cancelled)
+                .put("succeeded", succeeded)
+                .put("failed", failed)
+                .put("durationMs", System.currentTimeMillis() - startedAt));
+    }
+}
@@ -0,0 +1,444 @@
+package org.example.Engine;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.SqlClient;
+import io.vertx.sqlclient.Tuple;
+import org.example.db.DbQueryHelper;
+import org.example.services.DiscoveryRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Runs saved discoveries that carry a {@code schedule_interval} (seconds) and accepts ad-hoc jobs on
+ * {@link #ENQUEUE_ADDRESS}. Queued jobs are started highest {@code priority} first, subject to a global cap on
+ * running jobs, a per-subnet cap and a start rate limit. A job counts against every /{@code subnetPrefix} block
+ * its range touches, and ranges touching more than {@code maxSubnetsPerJob} blocks are refused. Each job's fan-out
+ * is capped at {@code jobConcurrency} hosts, so probes in flight stay below
+ * {@code maxRunningJobs * jobConcurrency} overall and {@code maxJobsPerSubnet * jobConcurrency} per subnet.
+ * A job that has not completed within {@code hostTimeoutMs} per round of {@code jobConcurrency} hosts is
+ * cancelled, and gives up its slot once the engine has acknowledged the cancel. The start of every run is stored
+ * in {@code last_run_at} (epoch millis) so schedules survive a restart.
+ */
+public class DiscoveryScheduler extends AbstractVerticle
+{
+    private static final Logger logger = LoggerFactory.getLogger(DiscoveryScheduler.class);
+
+    public static final String ENQUEUE_ADDRESS = "discovery.scheduler.enqueue";
+
+    public static final String STATS_ADDRESS = "discovery.scheduler.stats";
+
+    private static final String DUE_SCHEDULES =
+            "schedule_interval > 0 AND (last_run_at IS NULL OR last_run_at + schedule_interval * 1000::bigint <= $1)";
+
+    private record QueuedJob(int discoveryId, int priority, List<String> subnets, long hosts, long enqueuedAt, long sequence)
+    {
+    }
+
+    private final SqlClient sqlClient;
+
+    private final PriorityQueue<QueuedJob> queue = new PriorityQueue<>(Comparator
+            .comparingInt(QueuedJob::priority).reversed()
+            .thenComparingLong(QueuedJob::sequence));
+
+    private final Set<Integer> pendingDiscoveries = new HashSet<>();
+
+    private final Map<String, Integer> runningBySubnet = new HashMap<>();
+
+    private final Map<Integer, Long> lastRunAt = new HashMap<>();
+
+    private DbQueryHelper dbQueryHelper;
+
+    private DiscoveryRunner discoveryRunner;
+
+    private int maxRunningJobs;
+
+    private int maxJobsPerSubnet;
+
+    private int subnetPrefix;
+
+    private int maxSubnetsPerJob;
+
+    private int jobConcurrency;
+
+    private long hostTimeoutMs;
+
+    private double maxStartsPerSecond;
+
+    private double startTokens;
+
+    private long lastRefill;
+
+    private long retryTimer = -1;
+
+    private int running;
+
+    private long sequence;
+
+    private long dispatched;
+
+    private long totalWaitMs;
+
+    private long maxWaitMs;
+
+    public DiscoveryScheduler(SqlClient sqlClient)
+    {
+        this.sqlClient = sqlClient;
+    }
+
+    @Override
+    public void start(Promise<Void> startPromise)
+    {
+        dbQueryHelper = new DbQueryHelper(sqlClient);
+
+        discoveryRunner = new DiscoveryRunner(vertx, sqlClient);
+
+        maxRunningJobs = config().getInteger("maxRunningJobs", 8);
+
+        maxJobsPerSubnet = config().getInteger("maxJobsPerSubnet", 2);
+
+        subnetPrefix = config().getInteger("subnetPrefix", 24);
+
+        maxSubnetsPerJob = config().getInteger("maxSubnetsPerJob", 4096);
+
+        jobConcurrency = config().getInteger("jobConcurrency", 32);
+
+        hostTimeoutMs = config().getLong("hostTimeoutMs", 60000L);
+
+        maxStartsPerSecond = config().getDouble("maxStartsPerSecond", 5.0);
+
+        startTokens = Math.max(1, maxStartsPerSecond);
+
+        lastRefill = System.currentTimeMillis();
+
+        vertx.eventBus().<JsonObject>consumer(ENQUEUE_ADDRESS, message ->
+        {
+            var body = message.body();
+
+            var discoveryId = body.getInteger("discoveryId");
+
+            if (discoveryId == null)
+            {
+                message.fail(400, "discoveryId is required");
+                return;
+            }
+
+            discoveryRunner.loadProfile(discoveryId)
+                    .onSuccess(discovery ->
+                    {
+                        boolean queued;
+
+                        try
+                        {
+                            queued = enqueue(discoveryId, discovery, body.getInteger("priority", priorityOf(discovery)));
+                        }
+                        catch (IllegalArgumentException e)
+                        {
+                            message.fail(400, e.getMessage());
+                            return;
+                        }
+
+                        message.reply(new JsonObject().put("queued", queued).put("queueDepth", queue.size()));
+                    })
+                    .onFailure(err -> message.fail(404, err.getMessage()));
+        });
+
+        vertx.eventBus().consumer(STATS_ADDRESS, message -> message.reply(stats()));
+
+        vertx.setPeriodic(0, config().getLong("pollIntervalMs", 60000L), id -> pollSchedules());
+
+        startPromise.complete();
+    }
+
+    private void pollSchedules()
+    {
+        var now = System.currentTimeMillis();
+
+        // Only scheduled rows that are due; the in-memory check below covers runs whose last_run_at write failed
+        dbQueryHelper.fetchWhere("discoveries", DUE_SCHEDULES, Tuple.of(now))
+                .onSuccess(discoveries ->
+                {
+                    for (var discovery : discoveries)
+                    {
+                        var interval = discovery.getLong("schedule_interval");
+
+                        var discoveryId = discovery.getInteger("id");
+
+                        if (now - lastRunAt.getOrDefault(discoveryId, 0L) < interval * 1000)
+                        {
+                            continue;
+                        }
+
+                        try
+                        {
+                            enqueue(discoveryId, discovery, priorityOf(discovery));
+                        }
+                        catch (IllegalArgumentException e)
+                        {
+                            logger.warn("Skipping scheduled discovery {}: {}", discoveryId, e.getMessage());
+                        }
+                    }
+                })
+                .onFailure(err -> logger.error("Failed to load discovery schedules: {}", err.getMessage()));
+    }
+
+    private boolean enqueue(int discoveryId, JsonObject discovery, int priority)
+    {
+        var ip = discovery.getString("ip");
+
+        var subnets = subnetsOf(ip);
+
+        if (!pendingDiscoveries.add(discoveryId))
+        {
+            return false;
+        }
+
+        queue.add(new QueuedJob(discoveryId, priority, subnets, hostsOf(ip), System.currentTimeMillis(), sequence++));
+
+        dispatch();
+
+        return true;
+    }
+
+    private void dispatch()
+    {
+        refillTokens();
+
+        var candidates = new ArrayList<>(queue);
+
+        candidates.sort(queue.comparator());
+
+        for (var job : candidates)
+        {
+            if (running >= maxRunningJobs)
+            {
+                return;
+            }
+
+            if (job.subnets().stream().anyMatch(subnet -> runningBySubnet.getOrDefault(subnet, 0) >= maxJobsPerSubnet))
+            {
+                continue;
+            }
+
+            if (startTokens < 1)
+            {
+                scheduleRetry();
+                return;
+            }
+
+            startTokens--;
+
+            queue.remove(job);
+
+            start(job);
+        }
+    }
+
+    private void start(QueuedJob job)
+    {
+        var now = System.currentTimeMillis();
+
+        var waitMs = now - job.enqueuedAt();
+
+        running++;
+
+        job.subnets().forEach(subnet -> runningBySubnet.merge(subnet, 1, Integer::sum));
+
+        lastRunAt.put(job.discoveryId(), now);
+
+        dbQueryHelper.update("discoveries", "id", job.discoveryId(), new JsonObject().put("last_run_at", now))
+                .onFailure(err -> logger.warn("Failed to record last run of discovery {}: {}", job.discoveryId(), err.getMessage()));
+
+        dispatched++;
+
+        totalWaitMs += waitMs;
+
+        maxWaitMs = Math.max(maxWaitMs, waitMs);
+
+        logger.info("Starting scheduled discovery {} (priority {}, subnets {}, waited {} ms)",
+                job.discoveryId(), job.priority(), job.subnets().size(), waitMs);
+
+        // The engine reports completion on the event bus, so a lost "complete" event would otherwise hold the slot
+        // forever; the deadline allows one host timeout per round of jobConcurrency hosts
+        var deadlineMs = Math.max(1, (job.hosts() + jobConcurrency - 1) / jobConcurrency) * hostTimeoutMs;
+
+        var released = Promise.<Void>promise();
+
+        released.future().onComplete(v ->
+        {
+            running--;
+
+            job.subnets().forEach(subnet ->
+                    runningBySubnet.computeIfPresent(subnet, (key, count) -> count > 1 ? count - 1 : null));
+
+            pendingDiscoveries.remove(job.discoveryId());
+
+            dispatch();
+        });
+
+        discoveryRunner.start(job.discoveryId(), jobConcurrency)
+                .onFailure(err ->
+                {
+                    logger.error("Scheduled discovery {} failed to start: {}", job.discoveryId(), err.getMessage());
+
+                    released.tryComplete();
+                })
+                .onSuccess(run ->
+                {
+                    var deadline = vertx.setTimer(deadlineMs, id -> cancelOverdue(job, run.jobId(), deadlineMs, released));
+
+                    run.completion()
+                            .onFailure(err -> logger.error("Scheduled discovery {} failed: {}", job.discoveryId(), err.getMessage()))
+                            .onComplete(ar ->
+                            {
+                                vertx.cancelTimer(deadline);
+
+                                released.tryComplete();
+                            });
+                });
+    }
+
+    // The slot is only given back once the engine has stopped the job, so an overdue job can neither exceed the
+    // caps nor run twice alongside its next scheduled start
+    private void cancelOverdue(QueuedJob job, String jobId, long deadlineMs, Promise<Void> released)
+    {
+        if (released.future().isComplete())
+        {
+            return;
+        }
+
+        logger.warn("Scheduled discovery {} did not complete within {} ms, cancelling job {}", job.discoveryId(), deadlineMs, jobId);
+
+        discoveryRunner.cancel(jobId)
+                .onSuccess(v -> released.tryComplete())
+                .onFailure(err ->
+                {
+                    // No consumer means the job has already finished or its engine is gone, so nothing is running
+                    if (err instanceof ReplyException reply && reply.failureType() == ReplyFailure.NO_HANDLERS)
+                    {
+                        released.tryComplete();
+                        return;
+                    }
+
+                    logger.warn("Failed to cancel discovery job {} ({}), retrying in {} ms", jobId, err.getMessage(), hostTimeoutMs);
+
+                    vertx.setTimer(hostTimeoutMs, id -> cancelOverdue(job, jobId, deadlineMs, released));
+                });
+    }
+
+    private void refillTokens()
+    {
+        var now = System.currentTimeMillis();
+
+        startTokens = Math.min(Math.max(1, maxStartsPerSecond), startTokens + (now - lastRefill) * maxStartsPerSecond / 1000.0);
+
+        lastRefill = now;
+    }
+
+    private void scheduleRetry()
+    {
+        if (retryTimer != -1)
+        {
+            return;
+        }
+
+        var delay = Math.max(1, (long) Math.ceil((1 - startTokens) * 1000 / maxStartsPerSecond));
+
+        retryTimer = vertx.setTimer(delay, id ->
+        {
+            retryTimer = -1;
+
+            dispatch();
+        });
+    }
+
+    private int priorityOf(JsonObject discovery)
+    {
+        var priority = discovery.getInteger("priority");
+
+        return priority != null ? priority : 0;
+    }
+
+    private List<String> subnetsOf(String ipInput)
+    {
+        IpRange range;
+
+        try
+        {
+            range = IpRange.parse(ipInput);
+        }
+        catch (RuntimeException e)
+        {
+            return List.of("unknown");
+        }
+
+        var subnets = new ArrayList<String>();
+
+        for (var block : range.blocks(subnetPrefix, maxSubnetsPerJob))
+        {
+            subnets.add(IpRange.toIp(block) + "/" + subnetPrefix);
+        }
+
+        return subnets.isEmpty() ? List.of("unknown") : subnets;
+    }
+
+    private long hostsOf(String ipInput)
+    {
+        try
+        {
+            return IpRange.parse(ipInput).size();
+        }
+        catch (RuntimeException e)
+        {
+            return 1;
+        }
+    }
+
+    private JsonObject stats()
+    {
+        var now = System.currentTimeMillis();
+
+        var oldestWaitMs = queue.stream()
+                .mapToLong(job -> now - job.enqueuedAt())
+                .max()
+                .orElse(0);
+
+        var subnets = new JsonObject();
+
+        runningBySubnet.forEach(subnets::put);
+
+        var queued = new JsonArray();
+
+        queue.stream()
+                .sorted(queue.comparator())
+                .forEach(job -> queued.add(new JsonObject()
+                        .put("discoveryId", job.discoveryId())
+                        .put("priority", job.priority())
+                        .put("subnet", job.subnets().get(0))
+                        .put("subnetCount", job.subnets().size())
+                        .put("waitMs", now - job.enqueuedAt())));
+
+        return new JsonObject()
+                .put("queueDepth", queue.size())
+                .put("running", running)
+                .put("runningBySubnet", subnets)
+                .put("dispatched", dispatched)
+                .put("averageWaitMs", dispatched == 0 ? 0 : totalWaitMs / dispatched)
+                .put("maxWaitMs", maxWaitMs)
+                .put("oldestQueuedWaitMs", oldestWaitMs)
+                .put("queued", queued);
+    }
+}
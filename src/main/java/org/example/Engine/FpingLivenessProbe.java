@@ -0,0 +1,112 @@
+package org.example.Engine;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import org.example.utils.BlockingExecutor;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Liveness check that runs one fping process per batch of IPs and reads the round-trip time of every host that
+ * answered. Hosts fping does not report as alive get a loss of 1.0. Needs fping installed with permission to send
+ * ICMP.
+ */
+public class FpingLivenessProbe implements LivenessProbe
+{
+    // With -a -e fping prints "<ip> (<rtt> ms)" for every alive host
+    private static final Pattern ALIVE_LINE_PATTERN = Pattern.compile("^(\\S+)\\s+\\(([\\d.]+) ms\\)");
+
+    private final Vertx vertx;
+
+    private final String executable;
+
+    private final int timeoutSeconds;
+
+    public FpingLivenessProbe(Vertx vertx, String executable, int timeoutSeconds)
+    {
+        this.vertx = vertx;
+
+        this.executable = executable;
+
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    @Override
+    public Future<List<Result>> probe(List<String> ips)
+    {
+        if (ips.isEmpty())
+        {
+            return Future.succeededFuture(List.of());
+        }
+
+        return BlockingExecutor.shared(vertx).execute(() -> performFping(ips));
+    }
+
+    private List<Result> performFping(List<String> ips) throws Exception
+    {
+        var command = new ArrayList<String>();
+
+        command.add(executable);
+
+        command.add("-q");
+
+        command.add("-a");
+
+        command.add("-e");
+
+        command.add("-r");
+
+        command.add("1");
+
+        command.addAll(ips);
+
+        var pb = new ProcessBuilder(command);
+
+        pb.redirectErrorStream(true);
+
+        var process = pb.start();
+
+        var rtts = new HashMap<String, Double>();
+
+        try (var reader = new BufferedReader(new InputStreamReader(process.getInputStream())))
+        {
+            String line;
+
+            while ((line = reader.readLine()) != null)
+            {
+                var matcher = ALIVE_LINE_PATTERN.matcher(line.trim());
+
+                if (matcher.find())
+                {
+                    rtts.put(matcher.group(1), Double.parseDouble(matcher.group(2)));
+                }
+            }
+        }
+
+        if (!process.waitFor(timeoutSeconds, TimeUnit.SECONDS))
+        {
+            process.destroy();
+
+            throw new RuntimeException("fping timed out");
+        }
+
+        var results = new ArrayList<Result>(ips.size());
+
+        for (var ip : ips)
+        {
+            var rtt = rtts.get(ip);
+
+            results.add(rtt != null
+                    ? new Result(ip, true, rtt, 0.0)
+                    : new Result(ip, false, -1, 1.0));
+        }
+
+        return results;
+    }
+}
@@ -0,0 +1,415 @@
+package org.example.Engine;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of IPv4 addresses held as sorted, non-overlapping {@code [start, end]} intervals of 32-bit values.
+ * Addresses are only materialised as dotted strings while iterating, so a /16 costs a few longs rather than
+ * 65k Strings.
+ * <p>
+ * Accepted syntax is a comma-separated list of items, each of which may be prefixed with {@code !} to exclude it:
+ * a single address ({@code 10.0.0.5}), a CIDR block ({@code 10.0.0.0/20}), a last-octet range
+ * ({@code 10.0.0.1-50}) or a full range ({@code 10.0.0.200-10.0.1.20}).
+ */
+public final class IpRange implements Iterable<String>
+{
+    private static final long MAX_ADDRESS = 0xFFFFFFFFL;
+
+    private final long[] starts;
+
+    private final long[] ends;
+
+    private final long size;
+
+    private IpRange(List<long[]> intervals)
+    {
+        this.starts = new long[intervals.size()];
+
+        this.ends = new long[intervals.size()];
+
+        var total = 0L;
+
+        for (var i = 0; i < intervals.size(); i++)
+        {
+            starts[i] = intervals.get(i)[0];
+
+            ends[i] = intervals.get(i)[1];
+
+            total += ends[i] - starts[i] + 1;
+        }
+
+        this.size = total;
+    }
+
+    public static IpRange parse(String spec)
+    {
+        if (spec == null || spec.isBlank())
+        {
+            throw new IllegalArgumentException("IP range is empty");
+        }
+
+        var include = new ArrayList<long[]>();
+
+        var exclude = new ArrayList<long[]>();
+
+        for (var rawItem : spec.split(","))
+        {
+            var item = rawItem.trim();
+
+            if (item.isEmpty())
+            {
+                continue;
+            }
+
+            if (item.startsWith("!"))
+            {
+                exclude.add(parseItem(item.substring(1).trim()));
+            }
+            else
+            {
+                include.add(parseItem(item));
+            }
+        }
+
+        return new IpRange(subtract(merge(include), merge(exclude)));
+    }
+
+    public static boolean isValidIp(String ip)
+    {
+        return toLong(ip) >= 0;
+    }
+
+    /**
+     * Returns the address as an unsigned 32-bit value, or -1 if it is not a dotted-quad IPv4 address.
+     */
+    public static long toLong(String ip)
+    {
+        var value = 0L;
+
+        var octet = -1;
+
+        var dots = 0;
+
+        for (var i = 0; i < ip.length(); i++)
+        {
+            var c = ip.charAt(i);
+
+            if (c == '.')
+            {
+                if (octet < 0 || ++dots > 3)
+                {
+                    return -1;
+                }
+
+                value = (value << 8) | octet;
+
+                octet = -1;
+            }
+            else if (c >= '0' && c <= '9')
+            {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+
+                if (octet > 255)
+                {
+                    return -1;
+                }
+            }
+            else
+            {
+                return -1;
+            }
+        }
+
+        if (octet < 0 || dots != 3)
+        {
+            return -1;
+        }
+
+        return (value << 8) | octet;
+    }
+
+    public static String toIp(long value)
+    {
+        return ((value >>> 24) & 0xFF) + "." + ((value >>> 16) & 0xFF) + "." + ((value >>> 8) & 0xFF) + "." + (value & 0xFF);
+    }
+
+    public long size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public long first()
+    {
+        if (starts.length == 0)
+        {
+            throw new NoSuchElementException("IP range is empty");
+        }
+
+        return starts[0];
+    }
+
+    /**
+     * Returns the base address of every /{@code prefix} block this range touches, in ascending order. Fails if
+     * that is more than {@code limit} blocks.
+     */
+    public List<Long> blocks(int prefix, int limit)
+    {
+        var blockSize = 1L << (32 - prefix);
+
+        var mask = ~(blockSize - 1) & MAX_ADDRESS;
+
+        var blocks = new ArrayList<Long>();
+
+        for (var i = 0; i < starts.length; i++)
+        {
+            var block = starts[i] & mask;
+
+            if (!blocks.isEmpty() && blocks.get(blocks.size() - 1) == block)
+            {
+                block += blockSize;
+            }
+
+            for (; block <= ends[i]; block += blockSize)
+            {
+                if (blocks.size() == limit)
+                {
+                    throw new IllegalArgumentException("IP range spans more than " + limit + " /" + prefix + " blocks");
+                }
+
+                blocks.add(block);
+            }
+        }
+
+        return blocks;
+    }
+
+    public boolean contains(long address)
+    {
+        var low = 0;
+
+        var high = starts.length - 1;
+
+        while (low <= high)
+        {
+            var mid = (low + high) >>> 1;
+
+            if (address < starts[mid])
+            {
+                high = mid - 1;
+            }
+            else if (address > ends[mid])
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public Iterator<String> iterator()
+    {
+        return new Iterator<>()
+        {
+            private int interval;
+
+            private long next = starts.length > 0 ? starts[0] : 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return interval < starts.length;
+            }
+
+            @Override
+            public String next()
+            {
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                var current = next;
+
+                if (current == ends[interval])
+                {
+                    interval++;
+
+                    next = interval < starts.length ? starts[interval] : 0;
+                }
+                else
+                {
+                    next = current + 1;
+                }
+
+                return toIp(current);
+            }
+        };
+    }
+
+    private static long[] parseItem(String item)
+    {
+        var slash = item.indexOf('/');
+
+        if (slash >= 0)
+        {
+            var base = requireAddress(item.substring(0, slash), item);
+
+            int prefix;
+
+            try
+            {
+                prefix = Integer.parseInt(item.substring(slash + 1));
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IllegalArgumentException("Invalid CIDR prefix: " + item);
+            }
+
+            if (prefix < 0 || prefix > 32)
+            {
+                throw new IllegalArgumentException("Invalid CIDR prefix: " + item);
+            }
+
+            var hostMask = prefix == 0 ? MAX_ADDRESS : (1L << (32 - prefix)) - 1;
+
+            var network = base & ~hostMask & MAX_ADDRESS;
+
+            return new long[]{network, network | hostMask};
+        }
+
+        var dash = item.indexOf('-');
+
+        if (dash >= 0)
+        {
+            var start = requireAddress(item.substring(0, dash), item);
+
+            var endPart = item.substring(dash + 1).trim();
+
+            long end;
+
+            if (endPart.indexOf('.') >= 0)
+            {
+                end = requireAddress(endPart, item);
+            }
+            else
+            {
+                try
+                {
+                    var lastOctet = Integer.parseInt(endPart);
+
+                    if (lastOctet < 0 || lastOctet > 255)
+                    {
+                        throw new IllegalArgumentException("Invalid IP range: " + item);
+                    }
+
+                    end = (start & ~0xFFL) | lastOctet;
+                }
+                catch (NumberFormatException e)
+                {
+                    throw new IllegalArgumentException("Invalid IP range: " + item);
+                }
+            }
+
+            if (end < start)
+            {
+                throw new IllegalArgumentException("IP range end precedes its start: " + item);
+            }
+
+            return new long[]{start, end};
+        }
+
+        var address = requireAddress(item, item);
+
+        return new long[]{address, address};
+    }
+
+    private static long requireAddress(String ip, String item)
+    {
+        var value = toLong(ip.trim());
+
+        if (value < 0)
+        {
+            throw new IllegalArgumentException("Invalid IP address in: " + item);
+        }
+
+        return value;
+    }
+
+    private static List<long[]> merge(List<long[]> intervals)
+    {
+        intervals.sort((a, b) -> Long.compare(a[0], b[0]));
+
+        var merged = new ArrayList<long[]>();
+
+        for (var interval : intervals)
+        {
+            var last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+
+            if (last != null && interval[0] <= last[1] + 1)
+            {
+                last[1] = Math.max(last[1], interval[1]);
+            }
+            else
+            {
+                merged.add(new long[]{interval[0], interval[1]});
+            }
+        }
+
+        return merged;
+    }
+
+    private static List<long[]> subtract(List<long[]> include, List<long[]> exclude)
+    {
+        var result = new ArrayList<long[]>();
+
+        var e = 0;
+
+        for (var interval : include)
+        {
+            var start = interval[0];
+
+            var end = interval[1];
+
+            while (e < exclude.size() && exclude.get(e)[1] < start)
+            {
+                e++;
+            }
+
+            var j = e;
+
+            while (start <= end && j < exclude.size() && exclude.get(j)[0] <= end)
+            {
+                var excluded = exclude.get(j);
+
+                if (excluded[0] > start)
+                {
+                    result.add(new long[]{start, excluded[0] - 1});
+                }
+
+                start = Math.max(start, excluded[1] + 1);
+
+                j++;
+            }
+
+            if (start <= end)
+            {
+                result.add(new long[]{start, end});
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.Engine;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Host liveness sweep used before port scanning. Implementations return one result per input IP.
+ */
+public interface LivenessProbe
+{
+    record Result(String ip, boolean alive, double rttMs, double loss)
+    {
+    }
+
+    Future<List<Result>> probe(List<String> ips);
+
+    default Future<Void> close()
+    {
+        return Future.succeededFuture();
+    }
+
+    /**
+     * Builds the probe named by {@code livenessProbe} ("fping", "tcp" or "auto"). "auto" uses fping when the
+     * configured {@code fpingCommand} is executable and falls back to the in-JVM TCP probe otherwise.
+     */
+    static LivenessProbe create(Vertx vertx, JsonObject config)
+    {
+        var type = config.getString("livenessProbe", "auto");
+
+        var fpingCommand = config.getString("fpingCommand", "fping");
+
+        if ("auto".equals(type))
+        {
+            type = isExecutable(fpingCommand) ? "fping" : "tcp";
+        }
+
+        return switch (type)
+        {
+            case "fping" -> new FpingLivenessProbe(vertx, fpingCommand, config.getInteger("fpingTimeoutSeconds", 30));
+
+            case "tcp" -> new TcpLivenessProbe(vertx, config);
+
+            default -> throw new IllegalArgumentException("Unknown liveness probe: " + type);
+        };
+    }
+
+    private static boolean isExecutable(String executable)
+    {
+        // A command with a directory part is run as given rather than looked up on the PATH
+        if (executable.contains(File.separator))
+        {
+            var file = new File(executable);
+
+            return file.isFile() && file.canExecute();
+        }
+
+        var path = System.getenv("PATH");
+
+        if (path == null)
+        {
+            return false;
+        }
+
+        for (var dir : path.split(File.pathSeparator))
+        {
+            var file = new File(dir, executable);
+
+            if (file.isFile() && file.canExecute())
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.Engine;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Packs individual discovery contexts into multi-context plugin requests. A batch is sent once it holds
+ * {@code batchSize} contexts or {@code lingerMs} after its first context arrived, whichever comes first.
+ * The plugin must answer with a "results" array in the same order as the "contexts" it received.
+ * Not thread-safe: use it from the owning verticle's context only.
+ */
+public class PluginBatcher
+{
+    private record Entry(JsonObject context, Promise<JsonObject> promise)
+    {
+    }
+
+    private final Vertx vertx;
+
+    private final int batchSize;
+
+    private final long lingerMs;
+
+    private final Function<JsonArray, Future<JsonArray>> sender;
+
+    private List<Entry> buffer = new ArrayList<>();
+
+    private long lingerTimer = -1;
+
+    public PluginBatcher(Vertx vertx, int batchSize, long lingerMs, Function<JsonArray, Future<JsonArray>> sender)
+    {
+        this.vertx = vertx;
+
+        this.batchSize = Math.max(1, batchSize);
+
+        this.lingerMs = Math.max(1, lingerMs);
+
+        this.sender = sender;
+    }
+
+    public Future<JsonObject> submit(JsonObject context)
+    {
+        var promise = Promise.<JsonObject>promise();
+
+        buffer.add(new Entry(context, promise));
+
+        if (buffer.size() >= batchSize)
+        {
+            flush();
+        }
+        else if (lingerTimer == -1)
+        {
+            lingerTimer = vertx.setTimer(lingerMs, id ->
+            {
+                lingerTimer = -1;
+
+                flush();
+            });
+        }
+
+        return promise.future();
+    }
+
+    private void flush()
+    {
+        if (lingerTimer != -1)
+        {
+            vertx.cancelTimer(lingerTimer);
+
+            lingerTimer = -1;
+        }
+
+        if (buffer.isEmpty())
+        {
+            return;
+        }
+
+        var batch = buffer;
+
+        buffer = new ArrayList<>();
+
+        var contexts = new JsonArray();
+
+        batch.forEach(entry -> contexts.add(entry.context()));
+
+        sender.apply(contexts)
+                .onSuccess(results ->
+                {
+                    for (var i = 0; i < batch.size(); i++)
+                    {
+                        var promise = batch.get(i).promise();
+
+                        if (results == null || i >= results.size())
+                        {
+                            promise.fail("Plugin returned no result for context " + i + " of the batch");
+                        }
+                        else
+                        {
+                            promise.complete(results.getJsonObject(i));
+                        }
+                    }
+                })
+                .onFailure(err -> batch.forEach(entry -> entry.promise().fail(err)));
+    }
+}
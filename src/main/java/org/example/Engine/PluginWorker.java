@@ -0,0 +1,220 @@
+package org.example.Engine;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * One long-lived plugin process speaking newline-delimited JSON. Every request carries an "id" that the plugin
+ * echoes back, so several requests can be in flight on the same process.
+ */
+public class PluginWorker
+{
+    private static final Logger logger = LoggerFactory.getLogger(PluginWorker.class);
+
+    private final Vertx vertx;
+
+    private final Context context;
+
+    private final String name;
+
+    private final List<String> command;
+
+    private final Map<String, Promise<JsonObject>> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final ExecutorService writer;
+
+    private Process process;
+
+    private BufferedWriter stdin;
+
+    private volatile boolean alive;
+
+    public PluginWorker(Vertx vertx, Context context, String name, List<String> command)
+    {
+        this.vertx = vertx;
+
+        this.context = context;
+
+        this.name = name;
+
+        this.command = command;
+
+        this.writer = Executors.newSingleThreadExecutor(r ->
+        {
+            var thread = new Thread(r, name + "-writer");
+
+            // Like the reader, the writer must not keep the JVM alive if the pool is never closed
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    public void start(Consumer<PluginWorker> onExit) throws IOException
+    {
+        var pb = new ProcessBuilder(command);
+
+        pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+
+        process = pb.start();
+
+        stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+
+        alive = true;
+
+        var reader = new Thread(() -> readLoop(onExit), name + "-reader");
+
+        reader.setDaemon(true);
+
+        reader.start();
+
+        logger.info("Started plugin worker {} (pid {})", name, process.pid());
+    }
+
+    public Future<JsonObject> send(JsonObject request, long timeoutMs)
+    {
+        if (!alive)
+        {
+            return Future.failedFuture("Plugin worker " + name + " is not running");
+        }
+
+        var id = name + "-" + sequence.incrementAndGet();
+
+        var promise = Promise.<JsonObject>promise();
+
+        pending.put(id, promise);
+
+        var line = request.copy().put("id", id).encode();
+
+        writer.execute(() ->
+        {
+            try
+            {
+                stdin.write(line);
+
+                stdin.newLine();
+
+                stdin.flush();
+            }
+            catch (IOException e)
+            {
+                fail(id, "Failed to write to plugin worker " + name + ": " + e.getMessage());
+            }
+        });
+
+        var timerId = vertx.setTimer(timeoutMs, t -> fail(id, "Plugin request timed out on worker " + name));
+
+        return promise.future()
+                .onComplete(ar -> vertx.cancelTimer(timerId));
+    }
+
+    public int inFlight()
+    {
+        return pending.size();
+    }
+
+    public boolean isAlive()
+    {
+        return alive;
+    }
+
+    public String name()
+    {
+        return name;
+    }
+
+    public void stop()
+    {
+        alive = false;
+
+        writer.shutdownNow();
+
+        if (process != null)
+        {
+            process.destroy();
+        }
+    }
+
+    private void readLoop(Consumer<PluginWorker> onExit)
+    {
+        try (var reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)))
+        {
+            String line;
+
+            while ((line = reader.readLine()) != null)
+            {
+                if (line.isBlank())
+                {
+                    continue;
+                }
+
+                try
+                {
+                    var response = new JsonObject(line);
+
+                    var promise = pending.remove(response.getString("id", ""));
+
+                    if (promise != null)
+                    {
+                        context.runOnContext(v -> promise.tryComplete(response));
+                    }
+                    else
+                    {
+                        logger.warn("Plugin worker {} sent an unmatched response: {}", name, line);
+                    }
+                }
+                catch (DecodeException e)
+                {
+                    logger.warn("Plugin worker {} sent a non-JSON line: {}", name, line);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            logger.warn("Plugin worker {} stdout closed: {}", name, e.getMessage());
+        }
+
+        var wasAlive = alive;
+
+        alive = false;
+
+        pending.keySet().forEach(id -> fail(id, "Plugin worker " + name + " exited"));
+
+        if (wasAlive)
+        {
+            context.runOnContext(v -> onExit.accept(this));
+        }
+    }
+
+    private void fail(String id, String message)
+    {
+        var promise = pending.remove(id);
+
+        if (promise != null)
+        {
+            context.runOnContext(v -> promise.tryFail(message));
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package org.example.Engine;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Fixed-size pool of {@link PluginWorker}s. Requests go to the live worker with the fewest requests in flight;
+ * crashed or unhealthy workers are restarted in the background.
+ */
+public class PluginWorkerPool
+{
+    private static final Logger logger = LoggerFactory.getLogger(PluginWorkerPool.class);
+
+    private static final JsonArray DEFAULT_COMMAND = new JsonArray(List.of("./plugin/nms-plugin", "--serve"));
+
+    private static final long RESTART_DELAY_MS = 1000;
+
+    private final Vertx vertx;
+
+    private final List<String> command = new ArrayList<>();
+
+    private final int poolSize;
+
+    private final long requestTimeoutMs;
+
+    private final long healthCheckIntervalMs;
+
+    private final long pingTimeoutMs;
+
+    private final List<PluginWorker> workers = new ArrayList<>();
+
+    private final Set<String> restarting = new HashSet<>();
+
+    private Context context;
+
+    private long healthCheckTimer = -1;
+
+    private boolean closed;
+
+    public PluginWorkerPool(Vertx vertx, JsonObject config)
+    {
+        this.vertx = vertx;
+
+        for (var part : config.getJsonArray("pluginCommand", DEFAULT_COMMAND))
+        {
+            command.add((String) part);
+        }
+
+        this.poolSize = Math.max(1, config.getInteger("pluginPoolSize", Runtime.getRuntime().availableProcessors()));
+
+        this.requestTimeoutMs = config.getLong("pluginTimeoutMs", 60000L);
+
+        this.healthCheckIntervalMs = config.getLong("pluginHealthCheckMs", 10000L);
+
+        this.pingTimeoutMs = config.getLong("pluginPingTimeoutMs", 2000L);
+    }
+
+    public Future<Void> start()
+    {
+        context = vertx.getOrCreateContext();
+
+        return vertx.executeBlocking(() ->
+                {
+                    var started = new ArrayList<PluginWorker>();
+
+                    try
+                    {
+                        for (var i = 0; i < poolSize; i++)
+                        {
+                            var worker = new PluginWorker(vertx, context, "plugin-" + i, command);
+
+                            worker.start(this::restart);
+
+                            started.add(worker);
+                        }
+                    }
+                    catch (Exception e)
+                    {
+                        // Don't leave the workers that did start running behind a pool that failed
+                        started.forEach(PluginWorker::stop);
+
+                        throw e;
+                    }
+
+                    return started;
+                })
+                .onSuccess(started -> workers.addAll(started))
+                .onSuccess(v -> healthCheckTimer = vertx.setPeriodic(healthCheckIntervalMs, id -> healthCheck()))
+                .mapEmpty();
+    }
+
+    public Future<JsonObject> send(JsonObject request)
+    {
+        var worker = workers.stream()
+                .filter(PluginWorker::isAlive)
+                .min(Comparator.comparingInt(PluginWorker::inFlight));
+
+        if (worker.isEmpty())
+        {
+            return Future.failedFuture("No plugin worker available");
+        }
+
+        return worker.get().send(request, requestTimeoutMs);
+    }
+
+    public Future<Void> close()
+    {
+        closed = true;
+
+        if (healthCheckTimer != -1)
+        {
+            vertx.cancelTimer(healthCheckTimer);
+        }
+
+        workers.forEach(PluginWorker::stop);
+
+        return Future.succeededFuture();
+    }
+
+    private void healthCheck()
+    {
+        for (var worker : List.copyOf(workers))
+        {
+            // A busy worker can legitimately take up to the request timeout to answer, so only idle ones are pinged;
+            // a busy worker that dies is still caught by its reader seeing EOF
+            if (!worker.isAlive() || worker.inFlight() > 0)
+            {
+                continue;
+            }
+
+            worker.send(new JsonObject().put("requestType", "Ping"), pingTimeoutMs)
+                    .onFailure(err ->
+                    {
+                        logger.warn("Plugin worker {} failed health check: {}", worker.name(), err.getMessage());
+
+                        // Stopping marks the worker dead before its reader sees EOF, so restart it explicitly
+                        worker.stop();
+
+                        restart(worker);
+                    });
+        }
+    }
+
+    private void replace(PluginWorker worker)
+    {
+        restarting.remove(worker.name());
+
+        // The pool may have been closed while the replacement was starting; nothing else would ever stop it
+        if (closed)
+        {
+            worker.stop();
+
+            return;
+        }
+
+        for (var i = 0; i < workers.size(); i++)
+        {
+            if (workers.get(i).name().equals(worker.name()))
+            {
+                workers.get(i).stop();
+
+                workers.set(i, worker);
+
+                return;
+            }
+        }
+    }
+
+    private void restart(PluginWorker crashed)
+    {
+        // A failed health check and the reader's EOF both report the same worker, and a worker that was already
+        // replaced may still report its exit; only the first report for the current worker starts a replacement
+        if (closed || !workers.contains(crashed) || !restarting.add(crashed.name()))
+        {
+            return;
+        }
+
+        logger.warn("Restarting plugin worker {}", crashed.name());
+
+        scheduleRestart(crashed.name());
+    }
+
+    private void scheduleRestart(String name)
+    {
+        vertx.setTimer(RESTART_DELAY_MS, t ->
+        {
+            if (closed)
+            {
+                restarting.remove(name);
+
+                return;
+            }
+
+            vertx.executeBlocking(() ->
+                    {
+                        var worker = new PluginWorker(vertx, context, name, command);
+
+                        worker.start(this::restart);
+
+                        return worker;
+                    })
+                    .onSuccess(this::replace)
+                    .onFailure(err ->
+                    {
+                        logger.error("Failed to restart plugin worker {}: {}", name, err.getMessage());
+
+                        scheduleRestart(name);
+                    });
+        });
+    }
+}
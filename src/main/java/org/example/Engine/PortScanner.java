@@ -0,0 +1,130 @@
+package org.example.Engine;
+
+import io.netty.channel.ConnectTimeoutException;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetClientOptions;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous TCP connect scanner sharing a single {@link NetClient}. At most {@code maxInFlight}
+ * connects are outstanding at any time; further probes wait in a FIFO queue.
+ */
+public class PortScanner
+{
+    public enum PortState
+    {
+        OPEN,
+        CLOSED,
+        FILTERED
+    }
+
+    private record Probe(String ip, int port, Promise<PortState> promise)
+    {
+    }
+
+    private final NetClient client;
+
+    private final int maxInFlight;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Queue<Probe> pending = new ConcurrentLinkedQueue<>();
+
+    public PortScanner(Vertx vertx, int maxInFlight, int timeoutMs)
+    {
+        this.client = vertx.createNetClient(new NetClientOptions().setConnectTimeout(timeoutMs));
+
+        this.maxInFlight = maxInFlight;
+    }
+
+    public Future<PortState> probe(String ip, int port)
+    {
+        var promise = Promise.<PortState>promise();
+
+        pending.add(new Probe(ip, port, promise));
+
+        drain();
+
+        return promise.future();
+    }
+
+    public Future<Void> close()
+    {
+        return client.close();
+    }
+
+    private void drain()
+    {
+        while (!pending.isEmpty())
+        {
+            var current = inFlight.get();
+
+            if (current >= maxInFlight)
+            {
+                return;
+            }
+
+            if (!inFlight.compareAndSet(current, current + 1))
+            {
+                continue;
+            }
+
+            var probe = pending.poll();
+
+            if (probe == null)
+            {
+                inFlight.decrementAndGet();
+
+                return;
+            }
+
+            connect(probe);
+        }
+    }
+
+    private void connect(Probe probe)
+    {
+        client.connect(probe.port(), probe.ip())
+                .onComplete(ar ->
+                {
+                    if (ar.succeeded())
+                    {
+                        ar.result().close();
+
+                        probe.promise().complete(PortState.OPEN);
+                    }
+                    else
+                    {
+                        probe.promise().complete(classify(ar.cause()));
+                    }
+
+                    inFlight.decrementAndGet();
+
+                    drain();
+                });
+    }
+
+    private PortState classify(Throwable cause)
+    {
+        // Netty's connect timeout is itself a ConnectException, so it must be checked first
+        if (cause instanceof ConnectTimeoutException || cause instanceof NoRouteToHostException)
+        {
+            return PortState.FILTERED;
+        }
+
+        if (cause instanceof ConnectException)
+        {
+            return PortState.CLOSED;
+        }
+
+        return PortState.FILTERED;
+    }
+}
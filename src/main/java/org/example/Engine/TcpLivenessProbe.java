@@ -0,0 +1,105 @@
+package org.example.Engine;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-JVM liveness check that needs neither fping nor raw sockets. A host counts as alive for an attempt when any
+ * of the probe ports answers, whether by accepting the connection or by refusing it: a refusal is still a reply
+ * from a live TCP stack.
+ */
+public class TcpLivenessProbe implements LivenessProbe
+{
+    private static final JsonArray DEFAULT_PORTS = new JsonArray(List.of(7, 22, 80, 443));
+
+    private final PortScanner scanner;
+
+    private final List<Integer> ports = new ArrayList<>();
+
+    private final int attempts;
+
+    public TcpLivenessProbe(Vertx vertx, JsonObject config)
+    {
+        this.scanner = new PortScanner(vertx,
+                config.getInteger("livenessInFlight", 512),
+                config.getInteger("livenessTimeoutMs", 1000));
+
+        for (var port : config.getJsonArray("livenessPorts", DEFAULT_PORTS))
+        {
+            ports.add((Integer) port);
+        }
+
+        this.attempts = Math.max(1, config.getInteger("livenessAttempts", 1));
+    }
+
+    @Override
+    public Future<List<Result>> probe(List<String> ips)
+    {
+        var hosts = new ArrayList<Future<Result>>(ips.size());
+
+        for (var ip : ips)
+        {
+            hosts.add(probeHost(ip, 0, 0, 0));
+        }
+
+        return Future.all(hosts).map(all -> all.<Result>list());
+    }
+
+    @Override
+    public Future<Void> close()
+    {
+        return scanner.close();
+    }
+
+    private Future<Result> probeHost(String ip, int attempt, int answered, double rttTotal)
+    {
+        if (attempt == attempts)
+        {
+            var loss = (double) (attempts - answered) / attempts;
+
+            return Future.succeededFuture(answered > 0
+                    ? new Result(ip, true, rttTotal / answered, loss)
+                    : new Result(ip, false, -1, loss));
+        }
+
+        return probeOnce(ip)
+                .compose(rtt -> rtt >= 0
+                        ? probeHost(ip, attempt + 1, answered + 1, rttTotal + rtt)
+                        : probeHost(ip, attempt + 1, answered, rttTotal));
+    }
+
+    private Future<Double> probeOnce(String ip)
+    {
+        var promise = Promise.<Double>promise();
+
+        var remaining = new AtomicInteger(ports.size());
+
+        var started = System.nanoTime();
+
+        for (var port : ports)
+        {
+            scanner.probe(ip, port)
+                    .onSuccess(state ->
+                    {
+                        if (state != PortScanner.PortState.FILTERED)
+                        {
+                            promise.tryComplete((System.nanoTime() - started) / 1_000_000.0);
+                        }
+
+                        if (remaining.decrementAndGet() == 0)
+                        {
+                            promise.tryComplete(-1.0);
+                        }
+                    });
+        }
+
+        return promise.future();
+    }
+}
@@ -1,14 +1,32 @@
 package org.example;
 
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.micrometer.Label;
+import io.vertx.micrometer.Match;
+import io.vertx.micrometer.MatchType;
+import io.vertx.micrometer.MetricsDomain;
+import io.vertx.micrometer.MicrometerMetricsOptions;
+import io.vertx.micrometer.VertxPrometheusOptions;
 import org.example.ApiServer.HttpServer;
+import org.example.ApiServer.MetricsServer;
+import org.example.Engine.DiscoveryEngine;
+import org.example.Engine.DiscoveryScheduler;
 import org.example.db.DatabaseConfig;
+import org.example.db.DbQueryHelper;
+import org.example.utils.BlockingExecutor;
 import org.example.utils.ConfigLoader;
 import org.example.utils.JwtUtil;
+import org.example.utils.Metrics;
+import org.example.utils.PasswordHasher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.EnumSet;
+
 public class Main
 {
 
@@ -17,9 +35,10 @@ public class Main
 
     public static void main(String[] args)
     {
-        var vertx = Vertx.vertx();
+        var vertx = Vertx.vertx(new VertxOptions().setMetricsOptions(metricsOptions()));
 
-        startServer(vertx)
+        ConfigLoader.load(vertx)
+                .compose(config -> start(vertx, config))
                 .onSuccess(v -> logger.info("HTTP server started successfully"))
 
                 .onFailure(err -> {
@@ -28,19 +47,85 @@ public class Main
                 });
     }
 
-    private static Future<Object> startServer(Vertx vertx) {
+    // Prometheus registry scraped at /metrics on the MetricsServer listener. Per-job reply addresses are folded into one label value so the
+    // event-bus series stay bounded
+    private static MicrometerMetricsOptions metricsOptions()
+    {
+        return new MicrometerMetricsOptions()
+                .setEnabled(true)
+                .setPrometheusOptions(new VertxPrometheusOptions()
+                        .setEnabled(true)
+                        .setPublishQuantiles(true))
+                .setLabels(EnumSet.of(Label.HTTP_ROUTE, Label.HTTP_METHOD, Label.HTTP_CODE,
+                        Label.POOL_TYPE, Label.POOL_NAME, Label.EB_ADDRESS))
+                .addLabelMatch(new Match()
+                        .setDomain(MetricsDomain.EVENT_BUS)
+                        .setLabel("address")
+                        .setType(MatchType.REGEX)
+                        .setValue("discovery\\.job\\..*")
+                        .setAlias("discovery.job"))
+                .addLabelMatch(new Match()
+                        .setDomain(MetricsDomain.EVENT_BUS)
+                        .setLabel("address")
+                        .setType(MatchType.REGEX)
+                        .setValue("__vertx\\.reply\\..*")
+                        .setAlias("reply"));
+    }
+
+    /**
+     * Deploys the HTTP servers, discovery engines and scheduler for {@code config}. Also used by the load-test
+     * harness to boot the service in-process.
+     */
+    public static Future<Object> start(Vertx vertx, JsonObject config) {
+
+        // Composed so that configuration errors fail the returned future instead of throwing
+        return Future.succeededFuture()
+                .compose(v -> {
+
+                    var blockingExecutor = BlockingExecutor.shared(vertx, config.getJsonObject("blocking"));
+
+                    PasswordHasher.shared(vertx, config.getJsonObject("password"));
 
-        return ConfigLoader.load(vertx)
-                .compose(config -> {
+                    DbQueryHelper.bindMetrics(Metrics.registry());
 
+                    // Created once per process and shared by every HttpServer instance
                     var pgPool = DatabaseConfig.createPgPool(vertx, config);
 
-                    var jwtUtil = new JwtUtil(config);
+                    var jwtUtil = new JwtUtil(vertx, config);
+
+                    var port = config.getInteger("http.port");
+
+                    // One event loop per instance; 0 or unset means one instance per core
+                    var instances = config.getInteger("http.instances", 0);
+
+                    var serverOptions = new DeploymentOptions()
+                            .setInstances(instances > 0 ? instances : Runtime.getRuntime().availableProcessors());
+
+                    var discoveryConfig = config.getJsonObject("discovery", new JsonObject());
+
+                    var engineOptions = new DeploymentOptions()
+                            .setConfig(discoveryConfig)
+                            .setInstances(discoveryConfig.getInteger("instances", 1));
+
+                    var schedulerOptions = new DeploymentOptions()
+                            .setConfig(config.getJsonObject("scheduler", new JsonObject()));
+
+                    var metricsConfig = config.getJsonObject("metrics", new JsonObject());
 
-                    var server = new HttpServer(pgPool, jwtUtil, config.getInteger("http.port"));
+                    // Off by default for databases whose schema is managed elsewhere or whose user may not run DDL
+                    var schemaApplied = config.getJsonObject("db").getBoolean("applySchema", false)
+                            ? DatabaseConfig.applySchema(pgPool)
+                            : Future.<Void>succeededFuture();
 
-                    // Deploy the HttpServer verticle
-                    return vertx.deployVerticle(server)
+                    // Deploy the HttpServer verticle, the discovery engines it dispatches to and the scheduler
+                    return schemaApplied
+                            .compose(applied -> vertx.deployVerticle(() -> new HttpServer(pgPool, jwtUtil, port), serverOptions))
+                            .compose(id -> vertx.deployVerticle(DiscoveryEngine.class.getName(), engineOptions))
+                            .compose(id -> vertx.deployVerticle(new DiscoveryScheduler(pgPool), schedulerOptions))
+                            // The scrape endpoint only exists when a management port is configured
+                            .compose(id -> metricsConfig.getInteger("port", 0) > 0
+                                    ? vertx.deployVerticle(new MetricsServer(), new DeploymentOptions().setConfig(metricsConfig))
+                                    : Future.succeededFuture(id))
                             .mapEmpty()
 
                             .onComplete(ar ->
@@ -49,7 +134,9 @@ public class Main
                                       Runtime.getRuntime().addShutdownHook(new Thread(() ->
                                       {
                                         logger.info("Shutting down server and closing resources");
+                                        jwtUtil.close();
                                         pgPool.close();
+                                        blockingExecutor.close();
                                         vertx.close();
                                     }));
                                 }
@@ -1,16 +1,30 @@
 package org.example.db;
 
+import io.vertx.core.Future;
 import io.vertx.core.json.JsonObject;
 import io.vertx.pgclient.PgBuilder;
 import io.vertx.pgclient.PgConnectOptions;
 import io.vertx.sqlclient.PoolOptions;
 import io.vertx.core.Vertx;
-import io.vertx.sqlclient.SqlClient;
+import io.vertx.sqlclient.Pool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 public class DatabaseConfig
 {
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseConfig.class);
+
+    // Applied in this order; every statement is idempotent, so the whole list is reapplied on each start
+    private static final List<String> SCHEMA_FILES = List.of(
+            "db/001_discovery_results.sql",
+            "db/002_discovery_schedule.sql");
 
-    public static SqlClient createPgPool(Vertx vertx, JsonObject config)
+    public static Pool createPgPool(Vertx vertx, JsonObject config)
     {
         var dbConfig = config.getJsonObject("db");
 
@@ -34,16 +48,57 @@ public class DatabaseConfig
                 .setHost(host)
                 .setDatabase(database)
                 .setUser(user)
-                .setPassword(password);
+                .setPassword(password)
+                .setCachePreparedStatements(true)
+                .setPreparedStatementCacheMaxSize(dbConfig.getInteger("preparedStatementCacheSize", 256));
 
         var poolOptions = new PoolOptions()
-                .setMaxSize(dbConfig.getInteger("poolSize", 5));
+                .setMaxSize(dbConfig.getInteger("poolSize", 5))
+                .setName("nms-pg");
 
         return PgBuilder
-                .client()
+                .pool()
                 .with(poolOptions)
                 .connectingTo(connectOptions)
                 .using(vertx)
                 .build();
     }
+
+    /**
+     * Applies the DDL under {@code src/main/resources/db} that this service adds on top of the users, credentials
+     * and discoveries tables, which must already exist.
+     */
+    public static Future<Void> applySchema(Pool pool)
+    {
+        var applied = Future.<Void>succeededFuture();
+
+        for (var file : SCHEMA_FILES)
+        {
+            applied = applied.compose(v -> pool
+                    .query(readResource(file))
+                    .execute()
+                    .<Void>mapEmpty()
+                    .onSuccess(done -> logger.info("Applied schema file {}", file))
+                    .recover(err -> Future.failedFuture("Failed to apply " + file + ": " + err.getMessage())));
+        }
+
+        return applied;
+    }
+
+    private static String readResource(String path)
+    {
+        try (var in = DatabaseConfig.class.getClassLoader().getResourceAsStream(path))
+        {
+            if (in == null)
+            {
+                throw new IllegalStateException("Schema file " + path + " is missing from the classpath");
+            }
+
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -1,26 +1,46 @@
 package org.example.db;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import io.vertx.core.Future;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Pool;
 import io.vertx.sqlclient.Row;
 import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.RowStream;
 import io.vertx.sqlclient.SqlClient;
 import io.vertx.sqlclient.Tuple;
+import org.example.utils.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class DbQueryHelper
 {
 
     private static final Logger logger = LoggerFactory.getLogger(DbQueryHelper.class);
 
+    private static final SqlTemplateCache SQL_CACHE = new SqlTemplateCache(1024);
+
+    // Write counters per table, bumped whenever a write through this class completes
+    private static final ConcurrentHashMap<String, AtomicLong> TABLE_VERSIONS = new ConcurrentHashMap<>();
+
+    // Part of every version so that versions handed out before a restart never match afterwards
+    private static final String EPOCH = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+
     private final SqlClient client;
 
     public DbQueryHelper(SqlClient client)
@@ -30,49 +50,23 @@ public class DbQueryHelper
 
     public Future<RowSet<Row>> insert(String table, JsonObject data)
     {
-        var fieldNames = data.stream()
-                .map(Map.Entry::getKey)
-                .toList();
-
-        var columns = String.join(", ", fieldNames);
+        var fieldNames = sortedFieldNames(data);
 
-        var placeholders = IntStream.rangeClosed(1, fieldNames.size())
-                .mapToObj(i -> "$" + i)
-                .collect(Collectors.joining(", "));
-
-        var query = String.format("INSERT INTO %s (%s) VALUES (%s)", table, columns, placeholders);
-
-        var values = Tuple.tuple();
+        var query = insertSql(table, fieldNames);
 
-        for (var field : fieldNames)
-        {
-            Object value = data.getValue(field);
-
-            if (value instanceof JsonArray || value instanceof JsonObject)
-            {
-                values.addValue(value.toString());
-            }
-            else
-            {
-                values.addValue(value);
-            }
-        }
+        var values = insertTuple(data, fieldNames);
 
-        return client
+        return written(table, timed("insert", table, () -> client
                 .preparedQuery(query)
                 .execute(values)
-                .mapEmpty();
+                .mapEmpty()));
     }
 
     public Future<Void> update(String table, String idColumn, Object idValue, JsonObject data)
     {
-        var fieldNames = data.stream().map(Map.Entry::getKey).toList();
+        var fieldNames = sortedFieldNames(data);
 
-        var setClause = IntStream.rangeClosed(1, fieldNames.size())
-                .mapToObj(i -> fieldNames.get(i - 1) + " = $" + i)
-                .collect(Collectors.joining(", "));
-
-        var query = String.format("UPDATE %s SET %s WHERE %s = $%d", table, setClause, idColumn, fieldNames.size() + 1);
+        var query = updateSql(table, fieldNames, idColumn);
 
         var values = Tuple.tuple();
 
@@ -83,47 +77,49 @@ public class DbQueryHelper
 
         values.addValue(idValue);
 
-        return client
+        return written(table, timed("update", table, () -> client
                 .preparedQuery(query)
                 .execute(values)
-                .mapEmpty();
+                .mapEmpty()));
     }
 
     public Future<Void> delete(String table, String idColumn, Object idValue)
     {
-        var query = String.format("DELETE FROM %s WHERE %s = $1", table, idColumn);
+        var query = SQL_CACHE.get("delete", table, List.of(), idColumn,
+                () -> "DELETE FROM " + table + " WHERE " + idColumn + " = $1");
 
         logger.info("Executing DELETE query: {}", query);
 
-        return client
+        return written(table, timed("delete", table, () -> client
                 .preparedQuery(query)
                 .execute(Tuple.of(idValue))
-                .mapEmpty();
+                .mapEmpty()));
     }
 
     public Future<JsonObject> fetchOne(String table, String idColumn, Object idValue)
     {
-        var query = String.format("SELECT * FROM %s WHERE %s = $1", table, idColumn);
+        var query = SQL_CACHE.get("fetchOne", table, List.of(), idColumn,
+                () -> "SELECT * FROM " + table + " WHERE " + idColumn + " = $1");
 
         logger.info("Executing SELECT query: {}", query);
 
-        return client
+        return timed("fetchOne", table, () -> client
                 .preparedQuery(query)
                 .execute(Tuple.of(idValue))
                 .map(rows ->
                 {
                     var row = rows.iterator().next();
                     return row.toJson();
-                });
+                }));
     }
 
     public Future<List<JsonObject>> fetchAll(String table)
     {
-        var query = String.format("SELECT * FROM %s", table);
+        var query = SQL_CACHE.get("fetchAll", table, List.of(), null, () -> "SELECT * FROM " + table);
 
         logger.info("Executing SELECT ALL query: {}", query);
 
-        return client
+        return timed("fetchAll", table, () -> client
                 .query(query)
                 .execute()
                 .map(rows ->
@@ -134,6 +130,383 @@ public class DbQueryHelper
                         result.add(row.toJson());
                     }
                     return result;
-                });
+                }));
+    }
+
+    /**
+     * Returns up to {@code limit} rows with {@code idColumn} greater than {@code after}, ordered by
+     * {@code idColumn}, so the next page starts after the last id of this one.
+     */
+    public Future<List<JsonObject>> fetchPage(String table, String idColumn, Integer after, int limit)
+    {
+        var query = SQL_CACHE.get("fetchPage", table, List.of(), idColumn,
+                () -> "SELECT * FROM " + table + " WHERE " + idColumn + " > $1 ORDER BY " + idColumn + " LIMIT $2");
+
+        logger.info("Executing SELECT PAGE query: {}", query);
+
+        return timed("fetchPage", table, () -> client
+                .preparedQuery(query)
+                .execute(Tuple.of(after != null ? after : Integer.MIN_VALUE, limit))
+                .map(rows ->
+                {
+                    var result = new ArrayList<JsonObject>(rows.size());
+                    for (var row : rows)
+                    {
+                        result.add(row.toJson());
+                    }
+                    return result;
+                }));
+    }
+
+    /**
+     * Streams every row of {@code table} through a server-side cursor that fetches {@code fetchSize} rows at a
+     * time. The stream is handed to {@code consumer}, which must attach its handlers and complete the returned
+     * future once the stream has ended; the cursor's transaction is held open until then.
+     */
+    public Future<Void> streamAll(String table, String idColumn, int fetchSize, Function<RowStream<Row>, Future<Void>> consumer)
+    {
+        if (!(client instanceof Pool pool))
+        {
+            return Future.failedFuture("Streaming requires a connection pool");
+        }
+
+        var query = SQL_CACHE.get("streamAll", table, List.of(), idColumn,
+                () -> "SELECT * FROM " + table + " ORDER BY " + idColumn);
+
+        logger.info("Executing SELECT STREAM query: {}", query);
+
+        return timed("streamAll", table, () -> pool.withTransaction(connection -> connection
+                .prepare(query)
+                .compose(statement -> consumer.apply(statement.createStream(fetchSize)))));
+    }
+
+    /**
+     * Inserts rows grouped by column set, one {@code executeBatch} per group. If a group's batch fails, its rows
+     * are retried one after another so the failure can be pinned to the offending rows; rows with no columns to
+     * write are rejected up front. The returned list is aligned with {@code rows} and holds null for rows that were
+     * written and the error message otherwise.
+     */
+    public Future<List<String>> insertBatch(String table, List<JsonObject> rows)
+    {
+        return written(table, timed("insertBatch", table, () -> executeGrouped(rows, null,
+                fieldNames -> insertSql(table, fieldNames),
+                (row, fieldNames) -> insertTuple(row, fieldNames))));
+    }
+
+    /**
+     * Updates rows by {@code idColumn}, which every row must contain; see {@link #insertBatch} for grouping and
+     * per-row error reporting.
+     */
+    public Future<List<String>> updateBatch(String table, String idColumn, List<JsonObject> rows)
+    {
+        return written(table, timed("updateBatch", table, () -> executeGrouped(rows, idColumn,
+                fieldNames -> updateSql(table, fieldNames, idColumn),
+                (row, fieldNames) ->
+                {
+                    var values = Tuple.tuple();
+
+                    for (var field : fieldNames)
+                    {
+                        values.addValue(row.getValue(field));
+                    }
+
+                    return values.addValue(row.getValue(idColumn));
+                })));
+    }
+
+    /**
+     * Deletes all rows whose id is in {@code ids} with a single statement and returns the ids that were deleted.
+     */
+    public Future<List<Integer>> deleteByIds(String table, String idColumn, List<Integer> ids)
+    {
+        var query = SQL_CACHE.get("deleteByIds", table, List.of(), idColumn,
+                () -> "DELETE FROM " + table + " WHERE " + idColumn + " = ANY($1) RETURNING " + idColumn);
+
+        return written(table, timed("deleteByIds", table, () -> client
+                .preparedQuery(query)
+                .execute(Tuple.of(ids.toArray(new Integer[0])))
+                .map(rows ->
+                {
+                    var deleted = new ArrayList<Integer>(rows.rowCount());
+
+                    for (var row : rows)
+                    {
+                        deleted.add(row.getInteger(0));
+                    }
+
+                    return deleted;
+                })));
+    }
+
+    /**
+     * Fetches the rows of {@code table} matching {@code condition}, a SQL boolean expression whose {@code $n}
+     * placeholders are bound from {@code params}.
+     */
+    public Future<List<JsonObject>> fetchWhere(String table, String condition, Tuple params)
+    {
+        var query = "SELECT * FROM " + table + " WHERE " + condition;
+
+        logger.debug("Executing SELECT query: {}", query);
+
+        return timed("fetchWhere", table, () -> client
+                .preparedQuery(query)
+                .execute(params)
+                .map(rows ->
+                {
+                    var result = new ArrayList<JsonObject>(rows.size());
+                    for (var row : rows)
+                    {
+                        result.add(row.toJson());
+                    }
+                    return result;
+                }));
+    }
+
+    /**
+     * Returns the subset of {@code ids} that exist in {@code table}, using a single {@code = ANY($1)} query.
+     */
+    public Future<Set<Integer>> fetchExistingIds(String table, String idColumn, Collection<Integer> ids)
+    {
+        if (ids.isEmpty())
+        {
+            return Future.succeededFuture(Set.of());
+        }
+
+        var query = SQL_CACHE.get("existingIds", table, List.of(), idColumn,
+                () -> "SELECT " + idColumn + " FROM " + table + " WHERE " + idColumn + " = ANY($1)");
+
+        return timed("existingIds", table, () -> client
+                .preparedQuery(query)
+                .execute(Tuple.of(ids.toArray(new Integer[0])))
+                .map(rows ->
+                {
+                    var existing = new HashSet<Integer>();
+
+                    for (var row : rows)
+                    {
+                        existing.add(row.getInteger(0));
+                    }
+
+                    return existing;
+                }));
+    }
+
+    /**
+     * Fetches all rows whose id is in {@code ids} with a single {@code = ANY($1)} query.
+     */
+    public Future<List<JsonObject>> fetchByIds(String table, String idColumn, Collection<Integer> ids)
+    {
+        if (ids.isEmpty())
+        {
+            return Future.succeededFuture(List.of());
+        }
+
+        var query = SQL_CACHE.get("fetchByIds", table, List.of(), idColumn,
+                () -> "SELECT * FROM " + table + " WHERE " + idColumn + " = ANY($1)");
+
+        return timed("fetchByIds", table, () -> client
+                .preparedQuery(query)
+                .execute(Tuple.of(ids.toArray(new Integer[0])))
+                .map(rows ->
+                {
+                    var result = new ArrayList<JsonObject>(rows.size());
+                    for (var row : rows)
+                    {
+                        result.add(row.toJson());
+                    }
+                    return result;
+                }));
+    }
+
+    /**
+     * Current version of {@code table}: changes after every write made through any DbQueryHelper in this process,
+     * so a response tagged with it can be revalidated without querying. Writes made by other processes or directly
+     * in SQL are not seen.
+     */
+    public static String tableVersion(String table)
+    {
+        return table + "-" + EPOCH + "-" + TABLE_VERSIONS.computeIfAbsent(table, t -> new AtomicLong()).get();
+    }
+
+    /**
+     * Publishes the SQL template cache's hit, miss and size meters to {@code registry}.
+     */
+    public static void bindMetrics(MeterRegistry registry)
+    {
+        SQL_CACHE.bindTo(registry);
+    }
+
+    // Bumped on completion whether or not the write succeeded, since a failed batch may still have written rows.
+    // Readers take the version before querying, so a response is never tagged newer than its data
+    private static <T> Future<T> written(String table, Future<T> write)
+    {
+        return write.onComplete(ar -> TABLE_VERSIONS.computeIfAbsent(table, t -> new AtomicLong()).incrementAndGet());
+    }
+
+    private static <T> Future<T> timed(String operation, String table, Supplier<Future<T>> query)
+    {
+        return Metrics.time("nms.db.query", query, "operation", operation, "table", table);
+    }
+
+    private Future<List<String>> executeGrouped(List<JsonObject> rows, String idColumn,
+                                                Function<List<String>, String> sqlBuilder,
+                                                BiFunction<JsonObject, List<String>, Tuple> tupleBuilder)
+    {
+        var groups = new LinkedHashMap<List<String>, List<Integer>>();
+
+        var errors = new ArrayList<String>(Collections.nCopies(rows.size(), null));
+
+        for (var i = 0; i < rows.size(); i++)
+        {
+            var fieldNames = sortedFieldNames(rows.get(i));
+
+            if (idColumn != null)
+            {
+                fieldNames.remove(idColumn);
+            }
+
+            // Without columns the generated statement is not valid SQL and would fail the whole group
+            if (fieldNames.isEmpty())
+            {
+                errors.set(i, "No columns to write");
+                continue;
+            }
+
+            groups.computeIfAbsent(fieldNames, k -> new ArrayList<>()).add(i);
+        }
+
+        var batches = new ArrayList<Future<Void>>();
+
+        for (var group : groups.entrySet())
+        {
+            var fieldNames = group.getKey();
+
+            var indexes = group.getValue();
+
+            var query = sqlBuilder.apply(fieldNames);
+
+            var tuples = new ArrayList<Tuple>(indexes.size());
+
+            for (var index : indexes)
+            {
+                tuples.add(tupleBuilder.apply(rows.get(index), fieldNames));
+            }
+
+            logger.info("Executing batch of {} rows: {}", tuples.size(), query);
+
+            batches.add(client
+                    .preparedQuery(query)
+                    .executeBatch(tuples)
+                    .<Void>mapEmpty()
+                    .recover(err ->
+                    {
+                        logger.warn("Batch failed ({}), retrying {} rows individually", err.getMessage(), tuples.size());
+
+                        // One row at a time, so a failed batch of thousands of rows cannot queue thousands of
+                        // statements on the pool at once
+                        var retries = Future.<Void>succeededFuture();
+
+                        for (var i = 0; i < tuples.size(); i++)
+                        {
+                            var index = indexes.get(i);
+
+                            var tuple = tuples.get(i);
+
+                            retries = retries.compose(v -> client
+                                    .preparedQuery(query)
+                                    .execute(tuple)
+                                    .<Void>mapEmpty()
+                                    .recover(rowErr ->
+                                    {
+                                        errors.set(index, rowErr.getMessage());
+
+                                        return Future.succeededFuture();
+                                    }));
+                        }
+
+                        return retries;
+                    }));
+        }
+
+        return Future.all(batches).map(v -> errors);
+    }
+
+    static String insertSql(String table, List<String> fieldNames)
+    {
+        return SQL_CACHE.get("insert", table, fieldNames, null, () ->
+        {
+            var sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+
+            appendJoined(sql, fieldNames, ", ");
+
+            sql.append(") VALUES (");
+
+            for (var i = 1; i <= fieldNames.size(); i++)
+            {
+                sql.append(i > 1 ? ", $" : "$").append(i);
+            }
+
+            return sql.append(')').toString();
+        });
+    }
+
+    static String updateSql(String table, List<String> fieldNames, String idColumn)
+    {
+        return SQL_CACHE.get("update", table, fieldNames, idColumn, () ->
+        {
+            var sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+
+            for (var i = 0; i < fieldNames.size(); i++)
+            {
+                sql.append(i > 0 ? ", " : "").append(fieldNames.get(i)).append(" = $").append(i + 1);
+            }
+
+            return sql.append(" WHERE ").append(idColumn).append(" = $").append(fieldNames.size() + 1).toString();
+        });
+    }
+
+    static Tuple insertTuple(JsonObject data, List<String> fieldNames)
+    {
+        var values = Tuple.tuple();
+
+        for (var field : fieldNames)
+        {
+            Object value = data.getValue(field);
+
+            if (value instanceof JsonArray || value instanceof JsonObject)
+            {
+                values.addValue(value.toString());
+            }
+            else
+            {
+                values.addValue(value);
+            }
+        }
+
+        return values;
+    }
+
+    // Columns are sorted so that bodies with the same keys in a different order share one SQL text and therefore
+    // one prepared statement per connection
+    static List<String> sortedFieldNames(JsonObject data)
+    {
+        var fieldNames = new ArrayList<>(data.fieldNames());
+
+        Collections.sort(fieldNames);
+
+        return fieldNames;
+    }
+
+    private static void appendJoined(StringBuilder target, List<String> values, String separator)
+    {
+        for (var i = 0; i < values.size(); i++)
+        {
+            if (i > 0)
+            {
+                target.append(separator);
+            }
+
+            target.append(values.get(i));
+        }
     }
 }
@@ -0,0 +1,77 @@
+package org.example.db;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide cache of generated SQL text keyed by operation, table and column set. Lookups are lock-free. The
+ * key space is bounded by the tables and column sets callers use, so rather than tracking recency the cache is
+ * emptied on the rare occasion it reaches {@code maxEntries}.
+ */
+public class SqlTemplateCache
+{
+    private record Key(String operation, String table, List<String> columns, String idColumn)
+    {
+    }
+
+    private final Map<Key, String> templates = new ConcurrentHashMap<>();
+
+    private final int maxEntries;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder resets = new LongAdder();
+
+    public SqlTemplateCache(int maxEntries)
+    {
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    public String get(String operation, String table, List<String> columns, String idColumn, Supplier<String> builder)
+    {
+        var sql = templates.get(new Key(operation, table, columns, idColumn));
+
+        if (sql != null)
+        {
+            hits.increment();
+
+            return sql;
+        }
+
+        misses.increment();
+
+        sql = builder.get();
+
+        if (templates.size() >= maxEntries)
+        {
+            templates.clear();
+
+            resets.increment();
+        }
+
+        // Callers may reuse their column list, so the stored key gets its own copy
+        templates.put(new Key(operation, table, List.copyOf(columns), idColumn), sql);
+
+        return sql;
+    }
+
+    public void bindTo(MeterRegistry registry)
+    {
+        FunctionCounter.builder("nms.db.sql_cache.hits", hits, LongAdder::sum).register(registry);
+
+        FunctionCounter.builder("nms.db.sql_cache.misses", misses, LongAdder::sum).register(registry);
+
+        FunctionCounter.builder("nms.db.sql_cache.resets", resets, LongAdder::sum).register(registry);
+
+        Gauge.builder("nms.db.sql_cache.size", templates, Map::size).register(registry);
+    }
+}
@@ -7,17 +7,27 @@ import org.example.services.Credential;
 
 public class CredentialRoutes {
 
-    private final Credential credentialsService;
+    private final SqlClient sqlClient;
 
     public CredentialRoutes(SqlClient sqlClient)
     {
-        this.credentialsService = new Credential(sqlClient);
+        this.sqlClient = sqlClient;
     }
 
     public Router configureRoutes(Vertx vertx)
     {
         var router = Router.router(vertx);
 
+        var credentialsService = new Credential(vertx, sqlClient);
+
+        router.get("/cache/stats").handler(credentialsService::cacheStats);
+
+        router.post("/bulk").handler(credentialsService::createCredentials);
+
+        router.put("/bulk").handler(credentialsService::updateCredentials);
+
+        router.delete("/bulk").handler(credentialsService::deleteCredentials);
+
         router.post("/").handler(credentialsService::createCredential);
 
         router.get("/").handler(credentialsService::allCredential);
@@ -23,12 +23,30 @@ public class DiscoveryRoutes
     {
         var router = Router.router(vertx);
 
-        var discoveryService = new Discovery(sqlClient);
+        var discoveryService = new Discovery(vertx, sqlClient);
+
+        // Bulk create, update and delete; registered before the /:id routes so "bulk" is not taken for an id
+        router.post("/bulk")
+                .handler(discoveryService::createDiscoveries);
+
+        router.put("/bulk")
+                .handler(discoveryService::updateDiscoveries);
+
+        router.delete("/bulk")
+                .handler(discoveryService::deleteDiscoveries);
 
         // Create a new discovery
         router.post("/")
                 .handler(discoveryService::createDiscovery);
 
+        // Scheduler queue depth and wait times
+        router.get("/scheduler/stats")
+                .handler(discoveryService::schedulerStats);
+
+        // Discovery result cache hit/miss counters
+        router.get("/cache/stats")
+                .handler(discoveryService::cacheStats);
+
         // Get a discovery by ID
         router.get("/:id")
                 .handler(discoveryService::getDiscovery);
@@ -41,6 +59,14 @@ public class DiscoveryRoutes
         router.delete("/:id")
                 .handler(discoveryService::deleteDiscovery);
 
+        // Run a discovery profile through the discovery engine
+        router.post("/:id/run")
+                .handler(discoveryService::runDiscovery);
+
+        // Queue a discovery profile on the scheduler
+        router.post("/:id/enqueue")
+                .handler(discoveryService::enqueueDiscovery);
+
         // Get all discoveries
         router.get("/")
                 .handler(discoveryService::allDiscovery);
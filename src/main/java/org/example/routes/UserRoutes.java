@@ -10,21 +10,31 @@ import org.slf4j.LoggerFactory;
 
 public class UserRoutes
 {
-    private final User userService;
+    private final SqlClient sqlClient;
+
+    private final JwtUtil jwtUtil;
 
     public UserRoutes(SqlClient sqlClient, JwtUtil jwtUtil)
     {
-        this.userService = new User(sqlClient, jwtUtil);
+        this.sqlClient = sqlClient;
+
+        this.jwtUtil = jwtUtil;
     }
 
     public Router configureRoutes(Vertx vertx)
     {
         var router = Router.router(vertx);
 
+        var userService = new User(vertx, sqlClient, jwtUtil);
+
         router.post("/register").handler(userService::registerUser);
 
         router.post("/login").handler(userService::authenticateUser);
 
+        router.post("/refresh").handler(userService::refreshToken);
+
+        router.post("/logout").handler(userService::logout);
+
         return router;
     }
 }
@@ -0,0 +1,153 @@
+package org.example.services;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import org.example.utils.ApiResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Shared request handling for the bulk endpoints: validates every row of a JSON array body, runs the batch
+ * operation on the valid rows and replies with per-row errors keyed by the row's index in the request.
+ */
+final class BulkOperations
+{
+    private static final Logger logger = LoggerFactory.getLogger(BulkOperations.class);
+
+    private BulkOperations()
+    {
+    }
+
+    static void run(RoutingContext ctx, Function<JsonObject, String> validator,
+                    Function<List<JsonObject>, Future<List<String>>> operation, String message)
+    {
+        JsonArray body;
+
+        try
+        {
+            body = ctx.body().asJsonArray();
+        }
+        catch (DecodeException | ClassCastException e)
+        {
+            ApiResponse.error(ctx, "Request body must be a JSON array", 400);
+            return;
+        }
+
+        if (body == null || body.isEmpty())
+        {
+            ApiResponse.error(ctx, "Request body must be a non-empty JSON array", 400);
+            return;
+        }
+
+        var failed = new JsonArray();
+
+        var validRows = new ArrayList<JsonObject>();
+
+        var validIndexes = new ArrayList<Integer>();
+
+        for (var i = 0; i < body.size(); i++)
+        {
+            var value = body.getValue(i);
+
+            var error = value instanceof JsonObject row ? validator.apply(row) : "Row must be a JSON object";
+
+            if (error != null)
+            {
+                failed.add(rowError(i, error));
+            }
+            else
+            {
+                validRows.add((JsonObject) value);
+
+                validIndexes.add(i);
+            }
+        }
+
+        var operationResult = validRows.isEmpty()
+                ? Future.<List<String>>succeededFuture(List.of())
+                : operation.apply(validRows);
+
+        operationResult
+                .onSuccess(errors ->
+                {
+                    for (var i = 0; i < errors.size(); i++)
+                    {
+                        if (errors.get(i) != null)
+                        {
+                            failed.add(rowError(validIndexes.get(i), errors.get(i)));
+                        }
+                    }
+
+                    var data = new JsonObject()
+                            .put("total", body.size())
+                            .put("succeeded", body.size() - failed.size())
+                            .put("failed", failed);
+
+                    ApiResponse.success(ctx, data, message, failed.size() == body.size() ? 400 : 200);
+                })
+                .onFailure(err ->
+                {
+                    logger.error("Bulk operation failed: {}", err.getMessage());
+                    ApiResponse.error(ctx, "Bulk operation failed: " + err.getMessage(), 500);
+                });
+    }
+
+    static void deleteByIds(RoutingContext ctx, Function<List<Integer>, Future<List<Integer>>> operation, String message)
+    {
+        var body = ctx.body().asJsonObject();
+
+        var ids = body != null ? body.getJsonArray("ids") : null;
+
+        if (ids == null || ids.isEmpty())
+        {
+            ApiResponse.error(ctx, "Request body must contain a non-empty \"ids\" array", 400);
+            return;
+        }
+
+        var requested = new ArrayList<Integer>(ids.size());
+
+        try
+        {
+            for (var i = 0; i < ids.size(); i++)
+            {
+                requested.add(ids.getInteger(i));
+            }
+        }
+        catch (ClassCastException e)
+        {
+            ApiResponse.error(ctx, "ids must be integers", 400);
+            return;
+        }
+
+        operation.apply(requested)
+                .onSuccess(deleted ->
+                {
+                    var notFound = new JsonArray();
+
+                    requested.stream()
+                            .filter(id -> !deleted.contains(id))
+                            .forEach(notFound::add);
+
+                    var data = new JsonObject()
+                            .put("deleted", new JsonArray(deleted))
+                            .put("notFound", notFound);
+
+                    ApiResponse.success(ctx, data, message, 200);
+                })
+                .onFailure(err -> ApiResponse.error(ctx, "Delete failed: " + err.getMessage(), 500));
+    }
+
+    private static JsonObject rowError(int index, String error)
+    {
+        return new JsonObject()
+                .put("index", index)
+                .put("error", error);
+    }
+}
@@ -1,27 +1,37 @@
 package org.example.services;
 
 import io.vertx.core.Future;
+import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.sqlclient.SqlClient;
 import org.example.db.DbQueryHelper;
 import org.example.utils.ApiResponse;
+import org.example.utils.PageRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+
 public class Credential
 {
 
     private static final Logger logger = LoggerFactory.getLogger(Credential.class);
 
+    private static final int STREAM_FETCH_SIZE = 500;
+
     private final DbQueryHelper dbQueryHelper;
 
-    public Credential(SqlClient sqlClient)
+    private final CredentialCache credentialCache;
+
+    public Credential(Vertx vertx, SqlClient sqlClient)
     {
 
         this.dbQueryHelper = new DbQueryHelper(sqlClient);
 
+        this.credentialCache = CredentialCache.shared(vertx, sqlClient);
+
     }
 
     public void createCredential(RoutingContext ctx)
@@ -47,12 +57,11 @@ public class Credential
 
         if (id == null) return;
 
+        if (ApiResponse.notModified(ctx, DbQueryHelper.tableVersion("credentials"))) return;
+
         logger.info("get credential with id: {}", id);
 
-        dbQueryHelper.fetchOne("credentials", "id", id)
-                .compose(credential -> credential == null
-                        ? Future.failedFuture("Credential not found")
-                        : Future.succeededFuture(credential))
+        credentialCache.get(id)
                 .onSuccess(credential ->
                         ApiResponse.success(ctx, credential, "Credential retrieved", 200))
                 .onFailure(err ->
@@ -70,6 +79,7 @@ public class Credential
         if (body == null) return;
 
         dbQueryHelper.update("credentials", "id", id, body)
+                .onSuccess(res -> credentialCache.invalidate(List.of(id)))
                 .onSuccess(res ->
                         ApiResponse.success(ctx, null, "Credential updated", 200))
                 .onFailure(err ->
@@ -84,18 +94,98 @@ public class Credential
         if (id == null) return;
 
         dbQueryHelper.delete("credentials", "id", id)
+                .onSuccess(res -> credentialCache.invalidate(List.of(id)))
                 .onSuccess(res -> ApiResponse.success(ctx, null, "Credential deleted", 200))
                 .onFailure(err -> ApiResponse.error(ctx, "Delete failed: " + err.getMessage(), 404));
     }
 
     public void allCredential(RoutingContext ctx)
     {
+        if (ApiResponse.notModified(ctx, DbQueryHelper.tableVersion("credentials"))) return;
+
+        if ("true".equals(ctx.queryParams().get("stream")))
+        {
+            streamList(ctx);
+            return;
+        }
+
+        if (PageRequest.isRequested(ctx))
+        {
+            pageList(ctx);
+            return;
+        }
+
         dbQueryHelper.fetchAll("credentials")
                 .map(JsonArray::new)
                 .onSuccess(credentials -> ApiResponse.success(ctx, credentials, "All credentials", 200))
                 .onFailure(err -> ApiResponse.error(ctx, "Fetch failed: " + err.getMessage(), 500));
     }
 
+    public void cacheStats(RoutingContext ctx)
+    {
+        ApiResponse.success(ctx, credentialCache.stats(), "Credential cache stats", 200);
+    }
+
+    public void createCredentials(RoutingContext ctx)
+    {
+        BulkOperations.run(ctx,
+                row -> validateBody(row, true),
+                rows -> dbQueryHelper.insertBatch("credentials", rows),
+                "Bulk credential insert completed");
+    }
+
+    public void updateCredentials(RoutingContext ctx)
+    {
+        BulkOperations.run(ctx,
+                row -> row.getValue("id") instanceof Integer ? validateBody(row, false) : "Missing or invalid id",
+                rows -> dbQueryHelper.updateBatch("credentials", "id", rows)
+                        .onComplete(ar -> credentialCache.invalidate(rows.stream().map(row -> row.getInteger("id")).toList())),
+                "Bulk credential update completed");
+    }
+
+    public void deleteCredentials(RoutingContext ctx)
+    {
+        BulkOperations.deleteByIds(ctx,
+                ids -> dbQueryHelper.deleteByIds("credentials", "id", ids)
+                        .onComplete(ar -> credentialCache.invalidate(ids)),
+                "Bulk credential delete completed");
+    }
+
+    private void pageList(RoutingContext ctx)
+    {
+        var page = PageRequest.parse(ctx);
+
+        if (page == null) return;
+
+        dbQueryHelper.fetchPage("credentials", "id", page.after(), page.limit())
+                .onSuccess(rows ->
+                {
+                    var nextAfter = rows.size() == page.limit() ? rows.get(rows.size() - 1).getInteger("id") : null;
+
+                    var data = new JsonObject()
+                            .put("items", new JsonArray(rows))
+                            .put("nextAfter", nextAfter);
+
+                    ApiResponse.success(ctx, data, "Credentials page retrieved", 200);
+                })
+                .onFailure(err -> ApiResponse.error(ctx, "Fetch failed: " + err.getMessage(), 500));
+    }
+
+    private void streamList(RoutingContext ctx)
+    {
+        dbQueryHelper.streamAll("credentials", "id", STREAM_FETCH_SIZE,
+                        rows -> ApiResponse.stream(ctx, rows, "All credentials"))
+                .onFailure(err ->
+                {
+                    logger.error("Failed to stream credentials: {}", err.getMessage());
+
+                    if (!ctx.response().headWritten())
+                    {
+                        ApiResponse.error(ctx, "Fetch failed: " + err.getMessage(), 500);
+                    }
+                });
+    }
+
     private Integer validateAndGetId(RoutingContext ctx)
     {
         var idParam = ctx.pathParam("id");
@@ -126,19 +216,30 @@ public class Credential
             return null;
         }
 
-        if (isCreate && (!body.containsKey("name") || !body.containsKey("attributes") || !body.containsKey("type")))
+        var error = validateBody(body, isCreate);
+
+        if (error != null)
         {
-            ApiResponse.error(ctx, "Missing fields: name, attributes, or type", 400);
+            ApiResponse.error(ctx, error, 400);
             return null;
         }
 
-        if (body.containsKey("type") && !"SSH".equals(body.getString("type")))
+        return body;
+
+    }
+
+    private String validateBody(JsonObject body, boolean isCreate)
+    {
+        if (isCreate && (!body.containsKey("name") || !body.containsKey("attributes") || !body.containsKey("type")))
         {
-            ApiResponse.error(ctx, "Unsupported credential type: " + body.getString("type"), 400);
-            return null;
+            return "Missing fields: name, attributes, or type";
         }
 
-        return body;
+        if (body.containsKey("type") && !"SSH".equals(body.getString("type")))
+        {
+            return "Unsupported credential type: " + body.getString("type");
+        }
 
+        return null;
     }
 }
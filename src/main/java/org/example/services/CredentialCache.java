@@ -0,0 +1,163 @@
+package org.example.services;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.sqlclient.SqlClient;
+import org.example.db.DbQueryHelper;
+import org.example.utils.TtlLruCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded read-through cache of credential rows keyed by id, shared by every verticle of the process. Writers
+ * call {@link #invalidate}, which drops the entries locally and publishes the ids on {@link #INVALIDATE_ADDRESS}
+ * so that every other cache listening on the event bus drops them too.
+ */
+public class CredentialCache implements Shareable
+{
+    private static final Logger logger = LoggerFactory.getLogger(CredentialCache.class);
+
+    public static final String INVALIDATE_ADDRESS = "credentials.invalidate";
+
+    private static final String SHARED_MAP = "credentials.cache";
+
+    private static final int MAX_ENTRIES = 10000;
+
+    private static final long TTL_MS = 300000;
+
+    private final Vertx vertx;
+
+    private final DbQueryHelper dbQueryHelper;
+
+    private final TtlLruCache<Integer, JsonObject> entries = new TtlLruCache<>(MAX_ENTRIES);
+
+    // Bumped on every invalidation so that a load which started before a write cannot cache the old row
+    private final AtomicLong generation = new AtomicLong();
+
+    private CredentialCache(Vertx vertx, SqlClient sqlClient)
+    {
+        this.vertx = vertx;
+
+        this.dbQueryHelper = new DbQueryHelper(sqlClient);
+
+        vertx.eventBus().<JsonObject>consumer(INVALIDATE_ADDRESS, message -> evict(message.body().getJsonArray("ids")));
+    }
+
+    public static CredentialCache shared(Vertx vertx, SqlClient sqlClient)
+    {
+        return (CredentialCache) vertx.sharedData()
+                .getLocalMap(SHARED_MAP)
+                .computeIfAbsent(SHARED_MAP, key -> new CredentialCache(vertx, sqlClient));
+    }
+
+    public Future<JsonObject> get(int id)
+    {
+        return getAll(List.of(id))
+                .compose(found -> found.isEmpty()
+                        ? Future.failedFuture("Credential not found")
+                        : Future.succeededFuture(found.get(0)));
+    }
+
+    /**
+     * Returns the credentials that exist among {@code ids}, in request order, loading all cache misses with a
+     * single query.
+     */
+    public Future<List<JsonObject>> getAll(Collection<Integer> ids)
+    {
+        var found = new LinkedHashMap<Integer, JsonObject>();
+
+        var missing = new ArrayList<Integer>();
+
+        for (var id : ids)
+        {
+            var credential = entries.get(id);
+
+            if (credential != null)
+            {
+                found.put(id, credential.copy());
+            }
+            else
+            {
+                missing.add(id);
+            }
+        }
+
+        if (missing.isEmpty())
+        {
+            return Future.succeededFuture(new ArrayList<>(found.values()));
+        }
+
+        var loadGeneration = generation.get();
+
+        return dbQueryHelper.fetchByIds("credentials", "id", missing)
+                .map(loaded ->
+                {
+                    var byId = new LinkedHashMap<Integer, JsonObject>();
+
+                    for (var credential : loaded)
+                    {
+                        byId.put(credential.getInteger("id"), credential);
+
+                        if (generation.get() == loadGeneration)
+                        {
+                            entries.put(credential.getInteger("id"), credential.copy(), TTL_MS);
+                        }
+                    }
+
+                    var result = new ArrayList<JsonObject>();
+
+                    for (var id : ids)
+                    {
+                        var credential = found.containsKey(id) ? found.get(id) : byId.get(id);
+
+                        if (credential != null)
+                        {
+                            result.add(credential);
+                        }
+                    }
+
+                    return result;
+                });
+    }
+
+    public void invalidate(Collection<Integer> ids)
+    {
+        var array = new JsonArray(new ArrayList<>(ids));
+
+        evict(array);
+
+        vertx.eventBus().publish(INVALIDATE_ADDRESS, new JsonObject().put("ids", array));
+    }
+
+    public JsonObject stats()
+    {
+        return entries.stats();
+    }
+
+    private void evict(JsonArray ids)
+    {
+        generation.incrementAndGet();
+
+        if (ids == null)
+        {
+            entries.clear();
+            return;
+        }
+
+        for (var id : ids)
+        {
+            entries.invalidate((Integer) id);
+        }
+
+        logger.debug("Invalidated cached credentials: {}", ids.encode());
+    }
+}
@@ -1,29 +1,50 @@
 package org.example.services;
 
 import io.vertx.core.Future;
+import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.json.JsonArray;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.sqlclient.SqlClient;
+import org.example.Engine.DiscoveryEngine;
+import org.example.Engine.DiscoveryScheduler;
 import org.example.db.DbQueryHelper;
 import org.example.utils.ApiResponse;
+import org.example.utils.PageRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 public class Discovery
 {
 
     private static final Logger logger = LoggerFactory.getLogger(Discovery.class);
 
+    private static final int STREAM_FETCH_SIZE = 500;
+
     private final DbQueryHelper dbQueryHelper;
 
-    public Discovery(SqlClient sqlClient)
+    private final DiscoveryRunner discoveryRunner;
+
+    private final CredentialCache credentialCache;
+
+    public Discovery(Vertx vertx, SqlClient sqlClient)
     {
 
         this.dbQueryHelper = new DbQueryHelper(sqlClient);
 
+        this.discoveryRunner = new DiscoveryRunner(vertx, sqlClient);
+
+        this.credentialCache = CredentialCache.shared(vertx, sqlClient);
+
     }
 
     public void createDiscovery(RoutingContext ctx)
@@ -71,6 +92,8 @@ public class Discovery
 
         if (id == null) return;
 
+        if (ApiResponse.notModified(ctx, DbQueryHelper.tableVersion("discoveries"))) return;
+
         dbQueryHelper.fetchOne("discoveries", "id", id)
                 .onSuccess(credential ->
                 {
@@ -138,6 +161,19 @@ public class Discovery
     {
         logger.info("Handling GET /discoveries/");
 
+        if (ApiResponse.notModified(ctx, DbQueryHelper.tableVersion("discoveries"))) return;
+
+        if ("true".equals(ctx.queryParams().get("stream")))
+        {
+            streamList(ctx);
+            return;
+        }
+
+        if (PageRequest.isRequested(ctx))
+        {
+            pageList(ctx);
+            return;
+        }
 
         logger.info("Fetching all discoveries");
 
@@ -157,33 +193,236 @@ public class Discovery
     }
 
 
-    private Future<Object> validateCredentialIDs(JsonArray credentialIDs)
+    public void runDiscovery(RoutingContext ctx)
     {
+        logger.info("Handling POST /discoveries/:id/run");
 
-        if (credentialIDs == null || credentialIDs.isEmpty())
+        var id = validateAndGetId(ctx);
+
+        if (id == null) return;
+
+        discoveryRunner.start(id, null)
+                .onSuccess(run -> ApiResponse.success(ctx, new JsonObject().put("jobId", run.jobId()), "Discovery started", 202))
+                .onFailure(err ->
+                {
+                    logger.error("Failed to run discovery {}: {}", id, err.getMessage());
+                    ApiResponse.error(ctx, err.getMessage(), 400);
+                });
+    }
+
+    public void enqueueDiscovery(RoutingContext ctx)
+    {
+        logger.info("Handling POST /discoveries/:id/enqueue");
+
+        var id = validateAndGetId(ctx);
+
+        if (id == null) return;
+
+        var body = ctx.body().asJsonObject();
+
+        var request = new JsonObject().put("discoveryId", id);
+
+        if (body != null && body.containsKey("priority"))
         {
-            return Future.failedFuture("credential_ids must be present and not empty");
+            request.put("priority", body.getInteger("priority"));
         }
 
-        var future = Future.succeededFuture();
+        ctx.vertx().eventBus().<JsonObject>request(DiscoveryScheduler.ENQUEUE_ADDRESS, request)
+                .onSuccess(reply -> ApiResponse.success(ctx, reply.body(), "Discovery queued", 202))
+                .onFailure(err ->
+                {
+                    logger.error("Failed to queue discovery {}: {}", id, err.getMessage());
+                    ApiResponse.error(ctx, err.getMessage(), 400);
+                });
+    }
+
+    public void schedulerStats(RoutingContext ctx)
+    {
+        ctx.vertx().eventBus().<JsonObject>request(DiscoveryScheduler.STATS_ADDRESS, null)
+                .onSuccess(reply -> ApiResponse.success(ctx, reply.body(), "Scheduler stats", 200))
+                .onFailure(err -> ApiResponse.error(ctx, err.getMessage(), 503));
+    }
+
+    public void createDiscoveries(RoutingContext ctx)
+    {
+        logger.info("Handling POST /discoveries/bulk");
 
-        for (int i = 0; i < credentialIDs.size(); i++) {
-            int id = credentialIDs.getInteger(i);
+        BulkOperations.run(ctx, this::validateBulkRow, this::insertDiscoveries, "Bulk discovery insert completed");
+    }
+
+    public void updateDiscoveries(RoutingContext ctx)
+    {
+        logger.info("Handling PUT /discoveries/bulk");
 
-            future = future.compose(v ->
-                    dbQueryHelper.fetchOne("credentials", "id", id)
+        BulkOperations.run(ctx,
+                row -> row.getValue("id") instanceof Integer ? null : "Missing or invalid id",
+                rows -> dbQueryHelper.updateBatch("discoveries", "id", rows),
+                "Bulk discovery update completed");
+    }
+
+    public void deleteDiscoveries(RoutingContext ctx)
+    {
+        logger.info("Handling DELETE /discoveries/bulk");
+
+        BulkOperations.deleteByIds(ctx,
+                ids -> dbQueryHelper.deleteByIds("discoveries", "id", ids),
+                "Bulk discovery delete completed");
+    }
+
+    private String validateBulkRow(JsonObject row)
+    {
+        if (!(row.getValue("credential_ids") instanceof JsonArray credentialIDs) || credentialIDs.isEmpty())
+        {
+            return "credential_ids must be present and not empty";
+        }
+
+        for (var id : credentialIDs)
+        {
+            if (!(id instanceof Integer))
+            {
+                return "credential_ids must contain integers";
+            }
+        }
+
+        return null;
+    }
 
-                            .compose(result ->
+    // Checks the credential ids of every row with one query, then inserts the rows whose credentials all exist
+    private Future<List<String>> insertDiscoveries(List<JsonObject> rows)
+    {
+        var requestedIds = new HashSet<Integer>();
+
+        for (var row : rows)
+        {
+            row.getJsonArray("credential_ids").forEach(id -> requestedIds.add((Integer) id));
+        }
+
+        return existingCredentialIds(requestedIds)
+                .compose(existing ->
+                {
+                    var errors = new ArrayList<String>(Collections.nCopies(rows.size(), null));
+
+                    var insertable = new ArrayList<JsonObject>();
+
+                    var insertableIndexes = new ArrayList<Integer>();
+
+                    for (var i = 0; i < rows.size(); i++)
+                    {
+                        var missing = rows.get(i).getJsonArray("credential_ids").stream()
+                                .filter(id -> !existing.contains((Integer) id))
+                                .toList();
+
+                        if (missing.isEmpty())
+                        {
+                            insertable.add(rows.get(i));
+
+                            insertableIndexes.add(i);
+                        }
+                        else
+                        {
+                            errors.set(i, "Credential IDs do not exist: " + missing);
+                        }
+                    }
+
+                    return dbQueryHelper.insertBatch("discoveries", insertable)
+                            .map(insertErrors ->
                             {
-                                if (result == null)
+                                for (var i = 0; i < insertErrors.size(); i++)
                                 {
-                                    return Future.failedFuture("Credential ID " + id + " does not exist.");
+                                    errors.set(insertableIndexes.get(i), insertErrors.get(i));
                                 }
-                                return Future.succeededFuture();
-                            })
-            );
+
+                                return errors;
+                            });
+                });
+    }
+
+    public void cacheStats(RoutingContext ctx)
+    {
+        ctx.vertx().eventBus().<JsonObject>request(DiscoveryEngine.CACHE_STATS_ADDRESS, null)
+                .onSuccess(reply -> ApiResponse.success(ctx, reply.body(), "Discovery cache stats", 200))
+                .onFailure(err -> ApiResponse.error(ctx, err.getMessage(), 503));
+    }
+
+    private Future<Void> validateCredentialIDs(JsonArray credentialIDs)
+    {
+
+        if (credentialIDs == null || credentialIDs.isEmpty())
+        {
+            return Future.failedFuture("credential_ids must be present and not empty");
         }
-        return future;
+
+        var requestedIds = new LinkedHashSet<Integer>();
+
+        for (var id : credentialIDs)
+        {
+            if (!(id instanceof Integer intId))
+            {
+                return Future.failedFuture("credential_ids must contain integers");
+            }
+
+            requestedIds.add(intId);
+        }
+
+        return existingCredentialIds(requestedIds)
+                .compose(existing ->
+                {
+                    var missing = requestedIds.stream()
+                            .filter(id -> !existing.contains(id))
+                            .toList();
+
+                    return missing.isEmpty()
+                            ? Future.succeededFuture()
+                            : Future.failedFuture("Credential IDs do not exist: " + missing);
+                });
+    }
+
+    private Future<Set<Integer>> existingCredentialIds(Collection<Integer> ids)
+    {
+        return credentialCache.getAll(ids)
+                .map(credentials ->
+                {
+                    var existing = new HashSet<Integer>();
+
+                    credentials.forEach(credential -> existing.add(credential.getInteger("id")));
+
+                    return existing;
+                });
+    }
+
+    private void pageList(RoutingContext ctx)
+    {
+        var page = PageRequest.parse(ctx);
+
+        if (page == null) return;
+
+        dbQueryHelper.fetchPage("discoveries", "id", page.after(), page.limit())
+                .onSuccess(rows ->
+                {
+                    var nextAfter = rows.size() == page.limit() ? rows.get(rows.size() - 1).getInteger("id") : null;
+
+                    var data = new JsonObject()
+                            .put("items", new JsonArray(rows))
+                            .put("nextAfter", nextAfter);
+
+                    ApiResponse.success(ctx, data, "Discoveries page retrieved", 200);
+                })
+                .onFailure(err -> ApiResponse.error(ctx, "Fetch failed: " + err.getMessage(), 500));
+    }
+
+    private void streamList(RoutingContext ctx)
+    {
+        dbQueryHelper.streamAll("discoveries", "id", STREAM_FETCH_SIZE,
+                        rows -> ApiResponse.stream(ctx, rows, "All discoveries"))
+                .onFailure(err ->
+                {
+                    logger.error("Failed to stream discoveries: {}", err.getMessage());
+
+                    if (!ctx.response().headWritten())
+                    {
+                        ApiResponse.error(ctx, "Fetch failed: " + err.getMessage(), 500);
+                    }
+                });
     }
 
     private Integer validateAndGetId(RoutingContext ctx)
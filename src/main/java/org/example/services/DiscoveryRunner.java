@@ -0,0 +1,271 @@
+package org.example.services;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.SqlClient;
+import org.example.Engine.DiscoveryEngine;
+import org.example.Engine.DiscoveryJob;
+import org.example.db.DbQueryHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Runs a saved discovery profile on the deployed {@link DiscoveryEngine}s and stores every host result in the
+ * discovery_results table, batching rows that arrive close together. A job that has not completed within
+ * {@link #JOB_TIMEOUT_MS} is cancelled on the engine and its completion fails.
+ */
+public class DiscoveryRunner
+{
+    private static final Logger logger = LoggerFactory.getLogger(DiscoveryRunner.class);
+
+    private static final String RESULTS_TABLE = "discovery_results";
+
+    private static final long JOB_TIMEOUT_MS = 3_600_000;
+
+    private static final int RESULT_BATCH_SIZE = 100;
+
+    private static final long RESULT_FLUSH_MS = 500;
+
+    public record Run(String jobId, Future<JsonObject> completion)
+    {
+    }
+
+    private final Vertx vertx;
+
+    private final DbQueryHelper dbQueryHelper;
+
+    private final CredentialCache credentialCache;
+
+    public DiscoveryRunner(Vertx vertx, SqlClient sqlClient)
+    {
+        this.vertx = vertx;
+
+        this.dbQueryHelper = new DbQueryHelper(sqlClient);
+
+        this.credentialCache = CredentialCache.shared(vertx, sqlClient);
+    }
+
+    public Future<JsonObject> loadProfile(int discoveryId)
+    {
+        return dbQueryHelper.fetchOne("discoveries", "id", discoveryId)
+                .recover(err -> Future.failedFuture("Discovery not found"));
+    }
+
+    public Future<Run> start(int discoveryId, Integer concurrency)
+    {
+        return loadProfile(discoveryId)
+                .compose(discovery -> start(discoveryId, discovery, concurrency));
+    }
+
+    public Future<Run> start(int discoveryId, JsonObject discovery, Integer concurrency)
+    {
+        return fetchCredentials(toJsonArray(discovery.getValue("credential_ids")))
+                .compose(credentials -> dispatch(discoveryId, discovery, credentials, concurrency));
+    }
+
+    /**
+     * Asks the engine running {@code jobId} to stop. Succeeds once the engine has acknowledged; the job's
+     * "complete" event follows when its in-flight hosts are done.
+     */
+    public Future<Void> cancel(String jobId)
+    {
+        return vertx.eventBus().request(DiscoveryJob.cancelAddress(jobId), null).mapEmpty();
+    }
+
+    static JsonArray toJsonArray(Object value)
+    {
+        if (value instanceof JsonArray array)
+        {
+            return array;
+        }
+
+        if (value instanceof String text && !text.isBlank())
+        {
+            return new JsonArray(text);
+        }
+
+        return null;
+    }
+
+    private Future<JsonArray> fetchCredentials(JsonArray credentialIDs)
+    {
+        if (credentialIDs == null || credentialIDs.isEmpty())
+        {
+            return Future.failedFuture("Discovery has no credentials");
+        }
+
+        var ids = new LinkedHashSet<Integer>();
+
+        for (var i = 0; i < credentialIDs.size(); i++)
+        {
+            ids.add(credentialIDs.getInteger(i));
+        }
+
+        return credentialCache.getAll(ids)
+                .compose(credentials -> credentials.size() < ids.size()
+                        ? Future.failedFuture("Some credentials of this discovery no longer exist")
+                        : Future.succeededFuture(new JsonArray(credentials)));
+    }
+
+    private Future<Run> dispatch(int discoveryId, JsonObject discovery, JsonArray credentials, Integer concurrency)
+    {
+        var jobId = UUID.randomUUID().toString();
+
+        var request = new JsonObject()
+                .put("requestType", "Discovery")
+                .put("stream", true)
+                .put("fanOut", true)
+                .put("jobId", jobId)
+                .put("contexts", new JsonArray()
+                        .add(new JsonObject()
+                                .put("ip", discovery.getString("ip"))
+                                .put("port", discovery.getInteger("port"))
+                                .put("credentials", credentials)));
+
+        if (concurrency != null)
+        {
+            request.put("concurrency", concurrency);
+        }
+
+        var completion = Promise.<JsonObject>promise();
+
+        var results = new ResultBuffer();
+
+        // Results are persisted from the job's event stream, so the consumer must exist before the job starts
+        var consumer = vertx.eventBus().<JsonObject>consumer(DiscoveryJob.address(jobId));
+
+        consumer.handler(message ->
+        {
+            var event = message.body();
+
+            switch (event.getString("type", ""))
+            {
+                case "host" -> results.add(resultRow(discoveryId, jobId, event));
+
+                case "error" -> logger.warn("Discovery job {} error for {}: {}", jobId, event.getString("range"), event.getString("message"));
+
+                case "complete" ->
+                {
+                    logger.info("Discovery job {} completed: {}", jobId, event.encode());
+                    consumer.unregister();
+                    results.flush().onComplete(v -> completion.tryComplete(event));
+                }
+
+                default -> logger.debug("Ignoring discovery job event: {}", event.encode());
+            }
+        });
+
+        var registered = Promise.<Void>promise();
+
+        consumer.completionHandler(registered);
+
+        // Without it an engine that dies or drops the job would leave the consumer and the completion pending forever
+        var timeout = vertx.setTimer(JOB_TIMEOUT_MS, id ->
+        {
+            logger.warn("Discovery job {} did not complete within {} ms, cancelling it", jobId, JOB_TIMEOUT_MS);
+
+            cancel(jobId).onFailure(err -> logger.debug("Cancel of discovery job {} failed: {}", jobId, err.getMessage()));
+
+            consumer.unregister();
+
+            results.flush().onComplete(v -> completion.tryFail("Discovery job did not complete within " + JOB_TIMEOUT_MS + " ms"));
+        });
+
+        completion.future().onComplete(ar -> vertx.cancelTimer(timeout));
+
+        return registered.future()
+                .compose(v -> vertx.eventBus().<JsonObject>request(DiscoveryEngine.DISCOVERY_ADDRESS, request))
+                .compose(reply -> "error".equals(reply.body().getString("status"))
+                        ? Future.<Run>failedFuture(reply.body().getString("message"))
+                        : Future.succeededFuture(new Run(jobId, completion.future())))
+                .onFailure(err ->
+                {
+                    consumer.unregister();
+                    completion.tryFail(err);
+                });
+    }
+
+    private JsonObject resultRow(int discoveryId, String jobId, JsonObject event)
+    {
+        var result = event.getValue("result");
+
+        return new JsonObject()
+                .put("discovery_id", discoveryId)
+                .put("job_id", jobId)
+                .put("ip", event.getString("ip"))
+                .put("status", event.getString("status"))
+                .put("result", result != null ? result.toString() : event.getString("message"));
+    }
+
+    /**
+     * Host results of one job, written with one {@code insertBatch} per {@link #RESULT_BATCH_SIZE} rows or after
+     * {@link #RESULT_FLUSH_MS}, whichever comes first. Used from the job consumer's context only.
+     */
+    private final class ResultBuffer
+    {
+        private List<JsonObject> rows = new ArrayList<>();
+
+        private long flushTimer = -1;
+
+        void add(JsonObject row)
+        {
+            rows.add(row);
+
+            if (rows.size() >= RESULT_BATCH_SIZE)
+            {
+                flush();
+            }
+            else if (flushTimer == -1)
+            {
+                flushTimer = vertx.setTimer(RESULT_FLUSH_MS, id ->
+                {
+                    flushTimer = -1;
+
+                    flush();
+                });
+            }
+        }
+
+        Future<Void> flush()
+        {
+            if (flushTimer != -1)
+            {
+                vertx.cancelTimer(flushTimer);
+
+                flushTimer = -1;
+            }
+
+            if (rows.isEmpty())
+            {
+                return Future.succeededFuture();
+            }
+
+            var batch = rows;
+
+            rows = new ArrayList<>();
+
+            return dbQueryHelper.insertBatch(RESULTS_TABLE, batch)
+                    .onSuccess(errors ->
+                    {
+                        for (var i = 0; i < errors.size(); i++)
+                        {
+                            if (errors.get(i) != null)
+                            {
+                                logger.error("Failed to store discovery result for {}: {}", batch.get(i).getString("ip"), errors.get(i));
+                            }
+                        }
+                    })
+                    .onFailure(err -> logger.error("Failed to store {} discovery results: {}", batch.size(), err.getMessage()))
+                    .<Void>mapEmpty()
+                    .otherwiseEmpty();
+        }
+    }
+}
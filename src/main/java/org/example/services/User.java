@@ -1,6 +1,7 @@
 package org.example.services;
 
 import io.vertx.core.Future;
+import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.json.DecodeException;
 import io.vertx.ext.web.RoutingContext;
@@ -8,14 +9,13 @@ import io.vertx.sqlclient.SqlClient;
 
 import org.example.db.DbQueryHelper;
 import org.example.utils.ApiResponse;
+import org.example.utils.PasswordHasher;
 import org.example.utils.JwtUtil;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.Base64;
+import java.util.concurrent.RejectedExecutionException;
 
 public class User
 {
@@ -26,10 +26,13 @@ public class User
 
     private final JwtUtil jwtUtil;
 
-    public User(SqlClient sqlClient, JwtUtil jwtUtil)
+    private final PasswordHasher passwordHasher;
+
+    public User(Vertx vertx, SqlClient sqlClient, JwtUtil jwtUtil)
     {
         this.dbQueryHelper = new DbQueryHelper(sqlClient);
         this.jwtUtil = jwtUtil;
+        this.passwordHasher = PasswordHasher.shared(vertx);
     }
 
     public void registerUser(RoutingContext ctx)
@@ -49,18 +52,22 @@ public class User
 
         var password = body.getString("password");
 
-        var data = new JsonObject()
-                .put("username", username)
-                .put("password", hashPassword(password));
+        passwordHasher.hash(password)
+                .compose(hashedPassword ->
+                {
+                    var data = new JsonObject()
+                            .put("username", username)
+                            .put("password", hashedPassword);
 
-        logger.info("Registering user with data: {}", data.encode());
+                    logger.info("Registering user: {}", username);
 
-        dbQueryHelper.insert("users", data)
+                    return dbQueryHelper.insert("users", data);
+                })
                 .onSuccess(v -> ApiResponse.success(ctx, null, "User registered successfully", 201))
                 .onFailure(err ->
                 {
-                    logger.error("Database insert failed: {}", err.getMessage());
-                    ApiResponse.error(ctx, err.getMessage(), 400);
+                    logger.error("Registration failed: {}", err.getMessage());
+                    ApiResponse.error(ctx, err.getMessage(), err instanceof RejectedExecutionException ? 503 : 400);
                 });
     }
 
@@ -93,23 +100,32 @@ public class User
 
                     var storedPassword = user.getString("password");
 
-                    var hashedInputPassword = hashPassword(password);
+                    return passwordHasher.verify(password, storedPassword)
+                            .compose(matches ->
+                            {
+                                if (matches)
+                                {
+                                    if (passwordHasher.needsRehash(storedPassword))
+                                    {
+                                        upgradeHash(username, password);
+                                    }
 
-                    if (storedPassword.equals(hashedInputPassword))
-                    {
-                        user.remove("password");
+                                    user.remove("password");
 
-                        var token = jwtUtil.generateToken(username);
+                                    var token = jwtUtil.generateToken(username);
 
-                        user.put("token", token);
+                                    user.put("token", token);
 
-                        return Future.succeededFuture(user);
-                    }
-                    else
-                    {
-                        logger.warn("Invalid password for user: {}", username);
-                        return Future.failedFuture("Invalid password");
-                    }
+                                    user.put("refreshToken", jwtUtil.generateRefreshToken(username));
+
+                                    return Future.succeededFuture(user);
+                                }
+                                else
+                                {
+                                    logger.warn("Invalid password for user: {}", username);
+                                    return Future.failedFuture("Invalid password");
+                                }
+                            });
                 })
 
                 .onSuccess(user -> ApiResponse.success(ctx, user, "Login successful", 200))
@@ -117,6 +133,55 @@ public class User
                 .onFailure(err ->
                 {
                     logger.error("Login failed: {}", err.getMessage());
+                    ApiResponse.error(ctx, err.getMessage(), err instanceof RejectedExecutionException ? 503 : 401);
+                });
+    }
+
+    // Renews the session from the refresh token alone; the users table is not read
+    public void refreshToken(RoutingContext ctx)
+    {
+        logger.info("Handling POST /refresh");
+
+        var body = parseRequestBody(ctx);
+
+        if (body == null)
+        {
+            return;
+        }
+
+        jwtUtil.refresh(body.getString("refreshToken"))
+                .onSuccess(tokens -> ApiResponse.success(ctx, tokens, "Token refreshed", 200))
+                .onFailure(err ->
+                {
+                    logger.warn("Token refresh failed: {}", err.getMessage());
+                    ApiResponse.error(ctx, err.getMessage(), 401);
+                });
+    }
+
+    public void logout(RoutingContext ctx)
+    {
+        logger.info("Handling POST /logout");
+
+        var body = parseRequestBody(ctx);
+
+        if (body == null)
+        {
+            return;
+        }
+
+        jwtUtil.revokeRefreshToken(body.getString("refreshToken"))
+                .onSuccess(username ->
+                {
+                    var lifetimeMillis = jwtUtil.accessTokenLifetimeMillis();
+
+                    // Only the refresh token is revoked; say so rather than let clients assume the session is gone
+                    ApiResponse.success(ctx, new JsonObject().put("accessTokenValidForMillis", lifetimeMillis),
+                            "Logged out. The current access token stays valid until it expires, up to "
+                                    + lifetimeMillis / 60000 + " minutes", 200);
+                })
+                .onFailure(err ->
+                {
+                    logger.warn("Logout failed: {}", err.getMessage());
                     ApiResponse.error(ctx, err.getMessage(), 401);
                 });
     }
@@ -145,21 +210,14 @@ public class User
         }
     }
 
-    private String hashPassword(String password)
+    // Re-hashes with the current parameters after a successful login; the login itself does not wait for it
+    private void upgradeHash(String username, String password)
     {
-        try
-        {
-            var digest = MessageDigest.getInstance("SHA-256");
-
-            var hash = digest.digest(password.getBytes());
-
-            return Base64.getEncoder().encodeToString(hash);
-        }
-        catch (NoSuchAlgorithmException e)
-        {
-            logger.error("Password hashing failed: {}", e.getMessage());
-            throw new RuntimeException("Password hashing failed", e);
-        }
+        passwordHasher.hash(password)
+                .compose(hashedPassword -> dbQueryHelper.update("users", "username", username,
+                        new JsonObject().put("password", hashedPassword)))
+                .onSuccess(v -> logger.info("Upgraded password hash for user: {}", username))
+                .onFailure(err -> logger.warn("Failed to upgrade password hash for user {}: {}", username, err.getMessage()));
     }
 
     private boolean validateUserData(RoutingContext ctx, JsonObject userData)
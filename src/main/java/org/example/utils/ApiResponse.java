@@ -1,47 +1,226 @@
 package org.example.utils;
 
-import io.vertx.core.json.JsonObject;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
 import io.vertx.ext.web.RoutingContext;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowStream;
+
+import java.util.Collection;
+import java.util.Iterator;
 
 public class ApiResponse
 {
+    // Arrays and collections longer than this are sent chunked instead of being encoded into one buffer first
+    private static final int STREAM_THRESHOLD = 1000;
+
+    private static final int CHUNK_BYTES = 32 * 1024;
 
     public static void success(RoutingContext ctx, Object data, String message, int statusCode)
     {
-        var response = new JsonObject()
-                .put("status", "success")
-                .put("message", message != null ? message : "Operation successful");
+        if (data instanceof JsonArray array && array.size() > STREAM_THRESHOLD)
+        {
+            successStream(ctx, array, message, statusCode);
+            return;
+        }
 
-        if (data != null)
+        // Handlers mostly pass the List they collected rows into rather than a JsonArray
+        if (data instanceof Collection<?> items && items.size() > STREAM_THRESHOLD)
         {
-            response.put("data", data);
+            successStream(ctx, items, message, statusCode);
+            return;
         }
 
         ctx.response()
                 .setStatusCode(statusCode)
                 .putHeader("Content-Type", "application/json")
-                .end(response.encode());
+                .end(successBuffer(data, message));
+    }
+
+    /**
+     * Writes the success envelope around {@code items} as a chunked response, encoding about 32 KB
+     * at a time and waiting for the write queue to drain before encoding more.
+     */
+    public static void successStream(RoutingContext ctx, Iterable<?> items, String message, int statusCode)
+    {
+        var response = ctx.response()
+                .setChunked(true)
+                .setStatusCode(statusCode)
+                .putHeader("Content-Type", "application/json");
+
+        var writer = new JsonBufferWriter()
+                .startEnvelope("success", message != null ? message : "Operation successful")
+                .startArray("data");
+
+        writeItems(response, writer, items.iterator());
+    }
+
+    static Buffer successBuffer(Object data, String message)
+    {
+        var writer = new JsonBufferWriter()
+                .startEnvelope("success", message != null ? message : "Operation successful");
+
+        if (data != null)
+        {
+            writer.field("data", data);
+        }
+
+        return writer.endEnvelope().take();
+    }
+
+    /**
+     * Writes the success envelope with a "data" array as a chunked response, one row at a time, pausing the
+     * stream whenever the response's write queue is full.
+     */
+    public static Future<Void> stream(RoutingContext ctx, RowStream<Row> rows, String message)
+    {
+        var promise = Promise.<Void>promise();
+
+        var response = ctx.response()
+                .setChunked(true)
+                .setStatusCode(200)
+                .putHeader("Content-Type", "application/json");
+
+        var writer = new JsonBufferWriter()
+                .startEnvelope("success", message)
+                .startArray("data");
+
+        // A client that goes away while the stream is paused would leave the drain handler waiting forever, holding
+        // the cursor, its transaction and a pooled connection, so closing the response closes the stream
+        response.closeHandler(v ->
+        {
+            // HTTP/2 closes the stream as part of end(), which is not an abort
+            if (!response.ended())
+            {
+                rows.close();
+
+                promise.tryFail("Client closed the connection");
+            }
+        });
+
+        response.exceptionHandler(err ->
+        {
+            rows.close();
+
+            promise.tryFail(err);
+        });
+
+        rows.exceptionHandler(err ->
+        {
+            // The status line is already on the wire, so the only way to signal failure is to drop the connection
+            response.reset();
+
+            promise.tryFail(err);
+        });
+
+        rows.endHandler(v ->
+        {
+            if (!response.closed())
+            {
+                response.end(writer.endArray().endEnvelope().take());
+            }
+
+            promise.tryComplete();
+        });
+
+        rows.handler(row ->
+        {
+            if (response.closed())
+            {
+                return;
+            }
+
+            writer.value(row.toJson());
+
+            if (writer.pending() >= CHUNK_BYTES)
+            {
+                response.write(writer.take());
+
+                if (response.writeQueueFull())
+                {
+                    rows.pause();
+
+                    response.drainHandler(d -> rows.resume());
+                }
+            }
+        });
+
+        return promise.future();
+    }
+
+    /**
+     * Tags the response with {@code version} as a weak ETag and, if the request's If-None-Match already carries
+     * it, ends it with 304 and returns true so the handler can skip its query. Error responses go out untagged.
+     */
+    public static boolean notModified(RoutingContext ctx, String version)
+    {
+        ctx.etag("W/\"" + version + "\"");
+
+        if (ctx.isFresh())
+        {
+            ctx.response().setStatusCode(304).end();
+            return true;
+        }
+
+        ctx.addHeadersEndHandler(v ->
+        {
+            if (ctx.response().getStatusCode() >= 300)
+            {
+                ctx.response().headers().remove(HttpHeaders.ETAG);
+            }
+        });
+
+        return false;
     }
 
     public static void error(RoutingContext ctx, String message, Object errorDetails, int statusCode)
     {
-        var response = new JsonObject()
-                .put("status", "error")
-                .put("message", message != null ? message : "Operation failed");
+        var writer = new JsonBufferWriter()
+                .startEnvelope("error", message != null ? message : "Operation failed");
 
         if (errorDetails != null)
         {
-            response.put("error", errorDetails);
+            writer.field("error", errorDetails);
         }
 
         ctx.response()
                 .setStatusCode(statusCode)
                 .putHeader("Content-Type", "application/json")
-                .end(response.encode());
+                .end(writer.endEnvelope().take());
     }
 
     public static void error(RoutingContext ctx, String message, int statusCode)
     {
         error(ctx, message, null, statusCode);
     }
+
+    private static void writeItems(HttpServerResponse response, JsonBufferWriter writer, Iterator<?> items)
+    {
+        while (items.hasNext())
+        {
+            writer.value(items.next());
+
+            if (writer.pending() >= CHUNK_BYTES)
+            {
+                response.write(writer.take());
+
+                if (response.writeQueueFull())
+                {
+                    response.drainHandler(v ->
+                    {
+                        response.drainHandler(null);
+
+                        writeItems(response, writer, items);
+                    });
+                    return;
+                }
+            }
+        }
+
+        response.end(writer.endArray().endEnvelope().take());
+    }
 }
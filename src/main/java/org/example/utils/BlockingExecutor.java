@@ -0,0 +1,121 @@
+package org.example.utils;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs blocking sections off the event loop. By default tasks go to the Vert.x worker pool; with
+ * {@code virtualThreads} enabled each task gets its own virtual thread instead, with at most
+ * {@code maxConcurrency} tasks running at once, so thousands of tasks waiting on processes or sockets are not
+ * capped by the worker pool size. Virtual threads are looked up at runtime so the class still loads on JDKs
+ * without them, where tasks fall back to the worker pool. Call {@link #close()} on shutdown.
+ */
+public class BlockingExecutor implements Shareable
+{
+    private static final Logger logger = LoggerFactory.getLogger(BlockingExecutor.class);
+
+    private static final String SHARED_MAP = "blocking.executor";
+
+    private final Vertx vertx;
+
+    private final ExecutorService virtualExecutor;
+
+    private final Semaphore permits;
+
+    private BlockingExecutor(Vertx vertx, JsonObject config)
+    {
+        this.vertx = vertx;
+
+        this.virtualExecutor = config.getBoolean("virtualThreads", false) ? newVirtualExecutor() : null;
+
+        this.permits = this.virtualExecutor != null ? new Semaphore(config.getInteger("maxConcurrency", 1000)) : null;
+    }
+
+    private static ExecutorService newVirtualExecutor()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            logger.warn("Virtual threads are not available on this JVM, running blocking tasks on the worker pool");
+
+            return null;
+        }
+    }
+
+    /**
+     * Returns the process-wide executor, creating it from {@code config} on first use. Main creates it from the
+     * "blocking" config block before any verticle is deployed; later callers get that instance.
+     */
+    public static BlockingExecutor shared(Vertx vertx, JsonObject config)
+    {
+        return (BlockingExecutor) vertx.sharedData()
+                .getLocalMap(SHARED_MAP)
+                .computeIfAbsent(SHARED_MAP, key -> new BlockingExecutor(vertx, config != null ? config : new JsonObject()));
+    }
+
+    public static BlockingExecutor shared(Vertx vertx)
+    {
+        return shared(vertx, null);
+    }
+
+    public <T> Future<T> execute(Callable<T> task)
+    {
+        if (virtualExecutor == null)
+        {
+            return vertx.executeBlocking(task, false);
+        }
+
+        var context = vertx.getOrCreateContext();
+
+        var promise = Promise.<T>promise();
+
+        virtualExecutor.execute(() ->
+        {
+            try
+            {
+                permits.acquire();
+
+                try
+                {
+                    var result = task.call();
+
+                    context.runOnContext(v -> promise.complete(result));
+                }
+                finally
+                {
+                    permits.release();
+                }
+            }
+            catch (Throwable e)
+            {
+                context.runOnContext(v -> promise.fail(e));
+            }
+        });
+
+        return promise.future();
+    }
+
+    /**
+     * Interrupts tasks still running on virtual threads so that shutdown does not wait on hung processes or sockets.
+     */
+    public void close()
+    {
+        if (virtualExecutor != null)
+        {
+            virtualExecutor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package org.example.utils;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.JWTOptions;
+import io.vertx.ext.auth.User;
+import io.vertx.ext.auth.authentication.Credentials;
+import io.vertx.ext.auth.authentication.TokenCredentials;
+import io.vertx.ext.auth.jwt.JWTAuth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link JWTAuth} that remembers tokens it has already verified. Entries are keyed by the SHA-256 of the whole
+ * token, so a token only hits the cache if it is byte-for-byte one that passed the full signature check, and they
+ * never outlive the token's own {@code exp}. Each hit hands out a fresh {@link User} built from the cached
+ * principal and attributes.
+ */
+public class CachingJwtAuth implements JWTAuth
+{
+    private final JWTAuth delegate;
+
+    private final TtlLruCache<String, User> verified;
+
+    private final long maxTtlMs;
+
+    private final LongAdder verifications = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    public CachingJwtAuth(JWTAuth delegate, int maxEntries, long maxTtlMs)
+    {
+        this.delegate = delegate;
+
+        this.verified = new TtlLruCache<>(maxEntries);
+
+        this.maxTtlMs = maxTtlMs;
+    }
+
+    @Override
+    public Future<User> authenticate(Credentials credentials)
+    {
+        if (!(credentials instanceof TokenCredentials tokenCredentials) || tokenCredentials.getToken() == null)
+        {
+            return delegate.authenticate(credentials);
+        }
+
+        var key = tokenKey(tokenCredentials.getToken());
+
+        var cached = verified.get(key);
+
+        if (cached != null && !cached.expired())
+        {
+            return Future.succeededFuture(copy(cached));
+        }
+
+        verifications.increment();
+
+        return delegate.authenticate(credentials)
+                .onFailure(err -> failures.increment())
+                .onSuccess(user ->
+                {
+                    var ttl = ttlFor(user);
+
+                    if (ttl > 0)
+                    {
+                        verified.put(key, copy(user), ttl);
+                    }
+                });
+    }
+
+    @Override
+    public void authenticate(Credentials credentials, Handler<AsyncResult<User>> resultHandler)
+    {
+        authenticate(credentials).onComplete(resultHandler);
+    }
+
+    @Override
+    @Deprecated
+    public Future<User> authenticate(JsonObject credentials)
+    {
+        return authenticate(new TokenCredentials(credentials));
+    }
+
+    @Override
+    @Deprecated
+    public void authenticate(JsonObject credentials, Handler<AsyncResult<User>> resultHandler)
+    {
+        authenticate(credentials).onComplete(resultHandler);
+    }
+
+    @Override
+    public String generateToken(JsonObject claims, JWTOptions options)
+    {
+        return delegate.generateToken(claims, options);
+    }
+
+    @Override
+    public String generateToken(JsonObject claims)
+    {
+        return delegate.generateToken(claims);
+    }
+
+    public void invalidate(String token)
+    {
+        verified.invalidate(tokenKey(token));
+    }
+
+    public JsonObject stats()
+    {
+        return verified.stats()
+                .put("signatureVerifications", verifications.sum())
+                .put("verificationFailures", failures.sum());
+    }
+
+    private long ttlFor(User user)
+    {
+        var exp = user.principal().getLong("exp", user.attributes().getLong("exp"));
+
+        if (exp == null)
+        {
+            return maxTtlMs;
+        }
+
+        return Math.min(maxTtlMs, exp * 1000 - System.currentTimeMillis());
+    }
+
+    private static User copy(User user)
+    {
+        return User.create(user.principal().copy(), user.attributes().copy());
+    }
+
+    private static String tokenKey(String token)
+    {
+        try
+        {
+            var digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+
+            return Base64.getEncoder().encodeToString(digest);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package org.example.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.EncodeException;
+import io.vertx.core.json.jackson.JacksonCodec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Jackson generator that writes UTF-8 straight into Netty buffers, so a response is encoded once into the bytes
+ * that go on the wire with no String in between. {@link #take()} hands out what has been written so far as a
+ * {@link Buffer} and starts a new one, which lets large arrays be sent in chunks from a single generator. The
+ * output buffers are unpooled heap buffers; Jackson's own scratch buffers are the only recycled memory.
+ */
+final class JsonBufferWriter
+{
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final ChunkOutput output;
+
+    private final JsonGenerator generator;
+
+    JsonBufferWriter()
+    {
+        this.output = new ChunkOutput();
+
+        try
+        {
+            this.generator = FACTORY.createGenerator(output);
+        }
+        catch (IOException e)
+        {
+            throw new EncodeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Opens the {@code {"status": ..., "message": ...}} envelope every response shares.
+     */
+    JsonBufferWriter startEnvelope(String status, String message)
+    {
+        try
+        {
+            generator.writeStartObject();
+
+            generator.writeStringField("status", status);
+
+            generator.writeStringField("message", message);
+
+            return this;
+        }
+        catch (IOException e)
+        {
+            throw new EncodeException(e.getMessage(), e);
+        }
+    }
+
+    JsonBufferWriter field(String name, Object value)
+    {
+        try
+        {
+            generator.writeFieldName(name);
+
+            JacksonCodec.encodeJson(value, generator);
+
+            return this;
+        }
+        catch (IOException e)
+        {
+            throw new EncodeException(e.getMessage(), e);
+        }
+    }
+
+    JsonBufferWriter startArray(String name)
+    {
+        try
+        {
+            generator.writeArrayFieldStart(name);
+
+            return this;
+        }
+        catch (IOException e)
+        {
+            throw new EncodeException(e.getMessage(), e);
+        }
+    }
+
+    JsonBufferWriter value(Object value)
+    {
+        JacksonCodec.encodeJson(value, generator);
+
+        return this;
+    }
+
+    JsonBufferWriter endArray()
+    {
+        try
+        {
+            generator.writeEndArray();
+
+            return this;
+        }
+        catch (IOException e)
+        {
+            throw new EncodeException(e.getMessage(), e);
+        }
+    }
+
+    JsonBufferWriter endEnvelope()
+    {
+        try
+        {
+            generator.writeEndObject();
+
+            return this;
+        }
+        catch (IOException e)
+        {
+            throw new EncodeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Bytes written since the last {@link #take()}, including those still held by the generator.
+     */
+    int pending()
+    {
+        return output.size() + generator.getOutputBuffered();
+    }
+
+    // Buffer.buffer(ByteBuf) is the only way in Vert.x 4 to wrap the composite without copying it
+    @SuppressWarnings("deprecation")
+    Buffer take()
+    {
+        try
+        {
+            generator.flush();
+        }
+        catch (IOException e)
+        {
+            throw new EncodeException(e.getMessage(), e);
+        }
+
+        return Buffer.buffer(output.swap());
+    }
+
+    // Each flush from the generator becomes one exactly sized component, so a buffer never has to grow and copy.
+    // Heap buffers on purpose: Vert.x wraps what it is given as unreleasable, so pooled ones would never be returned.
+    private static final class ChunkOutput extends OutputStream
+    {
+        private CompositeByteBuf buffer;
+
+        int size()
+        {
+            return buffer != null ? buffer.readableBytes() : 0;
+        }
+
+        ByteBuf swap()
+        {
+            ByteBuf full = buffer != null ? buffer : Unpooled.EMPTY_BUFFER;
+
+            buffer = null;
+
+            return full;
+        }
+
+        @Override
+        public void write(int b)
+        {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length)
+        {
+            if (buffer == null)
+            {
+                buffer = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+            }
+
+            buffer.addComponent(true, Unpooled.copiedBuffer(bytes, offset, length));
+        }
+    }
+}
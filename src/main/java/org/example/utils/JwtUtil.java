@@ -1,8 +1,11 @@
 package org.example.utils;
 
+import io.vertx.core.Future;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.auth.JWTOptions;
+import io.vertx.ext.auth.User;
+import io.vertx.ext.auth.authentication.TokenCredentials;
 import io.vertx.ext.auth.jwt.JWTAuth;
 import io.vertx.ext.auth.jwt.JWTAuthOptions;
 import org.slf4j.Logger;
@@ -10,16 +13,35 @@ import org.slf4j.LoggerFactory;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class JwtUtil {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtUtil.class);
 
-    private final JWTAuth jwtAuth;
+    private static final String ACCESS = "access";
+
+    private static final String REFRESH = "refresh";
+
+    private final Vertx vertx;
+
+    private final CachingJwtAuth jwtAuth;
 
     private final JWTOptions jwtOptions;
 
-    public JwtUtil(JsonObject config) {
+    private final JWTOptions refreshOptions;
+
+    private final long expirationMillis;
+
+    private final long purgeTimer;
+
+    // jti of every refresh token that was redeemed or logged out, mapped to its exp in millis
+    private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<>();
+
+    public JwtUtil(Vertx vertx, JsonObject config) {
+
+        this.vertx = vertx;
 
         var jwtConfig = config.getJsonObject("jwt");
 
@@ -32,7 +54,9 @@ public class JwtUtil {
 
         var secretKey = jwtConfig.getString("secret");
 
-        var expirationMillis = jwtConfig.getLong("expirationMillis", 3600000L);
+        this.expirationMillis = jwtConfig.getLong("expirationMillis", 900000L);
+
+        var refreshExpirationMillis = jwtConfig.getLong("refreshExpirationMillis", 604800000L);
 
         var algorithm = jwtConfig.getString("algorithm", "HS256");
 
@@ -46,15 +70,30 @@ public class JwtUtil {
                 .encodeToString(secretKey.getBytes(StandardCharsets.UTF_8));
 
         var jwk = new JsonObject()
-                .put("algorithm", algorithm)
-                .put("key", base64urlEncodedKey);
+                .put("kty", "oct")
+                .put("alg", algorithm)
+                .put("k", base64urlEncodedKey);
 
         var jwtAuthOptions = new JWTAuthOptions()
                 .addJwk(jwk);
 
-        this.jwtAuth = JWTAuth.create(Vertx.currentContext().owner(), jwtAuthOptions);
+        this.jwtAuth = new CachingJwtAuth(JWTAuth.create(vertx, jwtAuthOptions),
+                jwtConfig.getInteger("verifyCacheSize", 10000),
+                jwtConfig.getLong("verifyCacheMaxTtlMillis", 300000L));
 
         this.jwtOptions = new JWTOptions().setExpiresInSeconds(Math.toIntExact(expirationMillis / 1000));
+
+        this.refreshOptions = new JWTOptions().setExpiresInSeconds(Math.toIntExact(refreshExpirationMillis / 1000));
+
+        this.purgeTimer = vertx.setPeriodic(jwtConfig.getLong("revocationPurgeMillis", 60000L), id -> purgeRevoked());
+    }
+
+    /**
+     * Stops the revocation purge timer; the instance must not be used afterwards.
+     */
+    public void close()
+    {
+        vertx.cancelTimer(purgeTimer);
     }
 
     public String generateToken(String username)
@@ -62,13 +101,97 @@ public class JwtUtil {
 
         logger.info("Generating JWT for username: {}", username);
 
-        var claims = new JsonObject().put("sub", username);
+        var claims = new JsonObject()
+                .put("sub", username)
+                .put("typ", ACCESS);
 
         return jwtAuth.generateToken(claims, jwtOptions);
     }
 
+    public String generateRefreshToken(String username)
+    {
+        var claims = new JsonObject()
+                .put("sub", username)
+                .put("typ", REFRESH)
+                .put("jti", UUID.randomUUID().toString());
+
+        return jwtAuth.generateToken(claims, refreshOptions);
+    }
+
+    /**
+     * Exchanges a refresh token for a new access/refresh pair. Refresh tokens are single use: the old one is
+     * revoked before the new pair is issued, so a replayed token fails.
+     */
+    public Future<JsonObject> refresh(String refreshToken)
+    {
+        return revokeRefreshToken(refreshToken)
+                .map(username -> new JsonObject()
+                        .put("token", generateToken(username))
+                        .put("refreshToken", generateRefreshToken(username)));
+    }
+
+    /**
+     * Revokes a refresh token and returns its subject. Fails if the token is invalid, is not a refresh token or
+     * has already been revoked.
+     */
+    public Future<String> revokeRefreshToken(String refreshToken)
+    {
+        if (refreshToken == null || refreshToken.isBlank())
+        {
+            return Future.failedFuture("Refresh token is required");
+        }
+
+        return jwtAuth.authenticate(new TokenCredentials(refreshToken))
+                .compose(user ->
+                {
+                    var jti = user.principal().getString("jti");
+
+                    if (!isRefreshToken(user) || jti == null)
+                    {
+                        return Future.failedFuture("Not a refresh token");
+                    }
+
+                    var exp = user.principal().getLong("exp", user.attributes().getLong("exp", 0L)) * 1000;
+
+                    if (revoked.putIfAbsent(jti, exp) != null)
+                    {
+                        logger.warn("Revoked refresh token presented for user: {}", user.principal().getString("sub"));
+
+                        return Future.failedFuture("Refresh token has been revoked");
+                    }
+
+                    jwtAuth.invalidate(refreshToken);
+
+                    return Future.succeededFuture(user.principal().getString("sub"));
+                });
+    }
+
+    public static boolean isRefreshToken(User user)
+    {
+        return REFRESH.equals(user.principal().getString("typ"));
+    }
+
+    // Access tokens are not tracked, so one issued before a logout stays valid for this long at most
+    public long accessTokenLifetimeMillis()
+    {
+        return expirationMillis;
+    }
+
     public JWTAuth getAuthProvider()
     {
         return jwtAuth;
     }
+
+    public JsonObject verificationStats()
+    {
+        return jwtAuth.stats().put("revokedRefreshTokens", revoked.size());
+    }
+
+    // An entry can go once its token has expired, since the signature check rejects it from then on
+    private void purgeRevoked()
+    {
+        var now = System.currentTimeMillis();
+
+        revoked.values().removeIf(exp -> exp <= now);
+    }
 }
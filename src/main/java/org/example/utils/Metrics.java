@@ -0,0 +1,46 @@
+package org.example.utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.micrometer.backends.BackendRegistries;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Application timers on top of the registry Vert.x exports through {@link org.example.ApiServer.MetricsServer}. When Vert.x was started without
+ * metrics the timers go to a registry with no backends and are dropped.
+ */
+public final class Metrics
+{
+    private static final MeterRegistry NOOP = new CompositeMeterRegistry();
+
+    private Metrics()
+    {
+    }
+
+    public static MeterRegistry registry()
+    {
+        var registry = BackendRegistries.getDefaultNow();
+
+        return registry != null ? registry : NOOP;
+    }
+
+    /**
+     * Runs {@code operation} and records how long its future took to complete under {@code name}, tagged with
+     * {@code tags} (key/value pairs) and the outcome.
+     */
+    public static <T> Future<T> time(String name, Supplier<Future<T>> operation, String... tags)
+    {
+        var start = System.nanoTime();
+
+        return operation.get().onComplete(ar -> Timer.builder(name)
+                .tags(Tags.of(tags).and("outcome", ar.succeeded() ? "success" : "failure"))
+                .publishPercentileHistogram()
+                .register(registry())
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    }
+}
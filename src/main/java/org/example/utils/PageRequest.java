@@ -0,0 +1,48 @@
+package org.example.utils;
+
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Keyset pagination parameters of a list request: {@code ?after=<last id seen>&limit=<page size>}.
+ */
+public record PageRequest(Integer after, int limit)
+{
+    public static final int DEFAULT_LIMIT = 100;
+
+    public static final int MAX_LIMIT = 1000;
+
+    public static boolean isRequested(RoutingContext ctx)
+    {
+        return ctx.queryParams().contains("after") || ctx.queryParams().contains("limit");
+    }
+
+    /**
+     * Parses the query parameters, replying with 400 and returning null when they are invalid.
+     */
+    public static PageRequest parse(RoutingContext ctx)
+    {
+        try
+        {
+            var afterParam = ctx.queryParams().get("after");
+
+            var limitParam = ctx.queryParams().get("limit");
+
+            var after = afterParam != null ? Integer.valueOf(afterParam) : null;
+
+            var limit = limitParam != null ? Integer.parseInt(limitParam) : DEFAULT_LIMIT;
+
+            if (limit < 1 || limit > MAX_LIMIT)
+            {
+                ApiResponse.error(ctx, "limit must be between 1 and " + MAX_LIMIT, 400);
+                return null;
+            }
+
+            return new PageRequest(after, limit);
+        }
+        catch (NumberFormatException e)
+        {
+            ApiResponse.error(ctx, "after and limit must be integers", 400);
+            return null;
+        }
+    }
+}
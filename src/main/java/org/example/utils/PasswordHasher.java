@@ -0,0 +1,186 @@
+package org.example.utils;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Salted PBKDF2-HMAC-SHA256 password hashing on a dedicated thread pool. Hashes are stored as
+ * {@code pbkdf2-sha256$<iterations>$<salt>$<hash>} so the work factor can be raised per deployment; hashes with
+ * fewer iterations than configured, or in the old unsalted SHA-256 format, report {@link #needsRehash} and can be
+ * upgraded after a successful login. At most {@code maxPending} hashes may be queued or running; further requests
+ * fail immediately with {@link RejectedExecutionException}.
+ */
+public class PasswordHasher implements Shareable
+{
+    private static final String SHARED_MAP = "password.hasher";
+
+    private static final String ALGORITHM = "pbkdf2-sha256";
+
+    private static final int SALT_BYTES = 16;
+
+    private static final int HASH_BITS = 256;
+
+    private final Vertx vertx;
+
+    private final int iterations;
+
+    private final int maxPending;
+
+    private final ExecutorService executor;
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final SecureRandom random = new SecureRandom();
+
+    private PasswordHasher(Vertx vertx, JsonObject config)
+    {
+        this.vertx = vertx;
+
+        this.iterations = config.getInteger("iterations", 210000);
+
+        this.maxPending = config.getInteger("maxPending", 64);
+
+        var threads = config.getInteger("threads", Runtime.getRuntime().availableProcessors());
+
+        var counter = new AtomicInteger();
+
+        this.executor = Executors.newFixedThreadPool(threads, r ->
+        {
+            var thread = new Thread(r, "nms-password-" + counter.getAndIncrement());
+
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the process-wide hasher, creating it from {@code config} on first use. Main creates it from the
+     * "password" config block before any verticle is deployed.
+     */
+    public static PasswordHasher shared(Vertx vertx, JsonObject config)
+    {
+        return (PasswordHasher) vertx.sharedData()
+                .getLocalMap(SHARED_MAP)
+                .computeIfAbsent(SHARED_MAP, key -> new PasswordHasher(vertx, config != null ? config : new JsonObject()));
+    }
+
+    public static PasswordHasher shared(Vertx vertx)
+    {
+        return shared(vertx, null);
+    }
+
+    public Future<String> hash(String password)
+    {
+        return submit(() ->
+        {
+            var salt = new byte[SALT_BYTES];
+
+            random.nextBytes(salt);
+
+            return encode(iterations, salt, pbkdf2(password, salt, iterations));
+        });
+    }
+
+    public Future<Boolean> verify(String password, String stored)
+    {
+        return submit(() ->
+        {
+            var parts = stored.split("\\$");
+
+            if (parts.length == 4 && ALGORITHM.equals(parts[0]))
+            {
+                var storedIterations = Integer.parseInt(parts[1]);
+
+                var salt = Base64.getDecoder().decode(parts[2]);
+
+                var expected = Base64.getDecoder().decode(parts[3]);
+
+                return MessageDigest.isEqual(expected, pbkdf2(password, salt, storedIterations));
+            }
+
+            // Hashes written before salting was introduced are a bare Base64 SHA-256 digest
+            var legacy = MessageDigest.getInstance("SHA-256").digest(password.getBytes(StandardCharsets.UTF_8));
+
+            return MessageDigest.isEqual(Base64.getDecoder().decode(stored), legacy);
+        });
+    }
+
+    public boolean needsRehash(String stored)
+    {
+        var parts = stored.split("\\$");
+
+        return parts.length != 4 || !ALGORITHM.equals(parts[0]) || Integer.parseInt(parts[1]) < iterations;
+    }
+
+    private <T> Future<T> submit(Callable<T> task)
+    {
+        if (pending.incrementAndGet() > maxPending)
+        {
+            pending.decrementAndGet();
+
+            return Future.failedFuture(new RejectedExecutionException("Too many concurrent password operations"));
+        }
+
+        var context = vertx.getOrCreateContext();
+
+        var promise = Promise.<T>promise();
+
+        executor.execute(() ->
+        {
+            try
+            {
+                var result = task.call();
+
+                context.runOnContext(v -> promise.complete(result));
+            }
+            catch (Exception e)
+            {
+                context.runOnContext(v -> promise.fail(e));
+            }
+            finally
+            {
+                pending.decrementAndGet();
+            }
+        });
+
+        return promise.future();
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) throws GeneralSecurityException
+    {
+        var spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+
+        try
+        {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        }
+        finally
+        {
+            spec.clearPassword();
+        }
+    }
+
+    private static String encode(int iterations, byte[] salt, byte[] hash)
+    {
+        var encoder = Base64.getEncoder();
+
+        return ALGORITHM + "$" + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+}
@@ -0,0 +1,106 @@
+package org.example.utils;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded LRU map whose entries each carry their own expiry. All methods are synchronized so one instance
+ * can be shared by verticles running on different event loops.
+ */
+public class TtlLruCache<K, V>
+{
+    private record Entry<V>(V value, long expiresAt)
+    {
+    }
+
+    private final int maxEntries;
+
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    public TtlLruCache(int maxEntries)
+    {
+        this.maxEntries = Math.max(1, maxEntries);
+
+        this.entries = new LinkedHashMap<>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest)
+            {
+                if (size() > TtlLruCache.this.maxEntries)
+                {
+                    evictions++;
+
+                    return true;
+                }
+
+                return false;
+            }
+        };
+    }
+
+    public synchronized V get(K key)
+    {
+        var entry = entries.get(key);
+
+        if (entry == null)
+        {
+            misses++;
+
+            return null;
+        }
+
+        if (entry.expiresAt() <= System.currentTimeMillis())
+        {
+            entries.remove(key);
+
+            misses++;
+
+            return null;
+        }
+
+        hits++;
+
+        return entry.value();
+    }
+
+    public synchronized void put(K key, V value, long ttlMs)
+    {
+        if (ttlMs <= 0)
+        {
+            return;
+        }
+
+        entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMs));
+    }
+
+    public synchronized void invalidate(K key)
+    {
+        entries.remove(key);
+    }
+
+    public synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    public synchronized JsonObject stats()
+    {
+        var lookups = hits + misses;
+
+        return new JsonObject()
+                .put("size", entries.size())
+                .put("maxEntries", maxEntries)
+                .put("hits", hits)
+                .put("misses", misses)
+                .put("evictions", evictions)
+                .put("hitRate", lookups == 0 ? 0.0 : (double) hits / lookups);
+    }
+}
@@ -0,0 +1,13 @@
+-- Per-host results of discovery runs, written by DiscoveryRunner as each host finishes
+CREATE TABLE IF NOT EXISTS discovery_results
+(
+    id           SERIAL PRIMARY KEY,
+    discovery_id INTEGER     NOT NULL,
+    job_id       VARCHAR(64) NOT NULL,
+    ip           VARCHAR(64) NOT NULL,
+    status       VARCHAR(32) NOT NULL,
+    result       TEXT,
+    created_at   TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS discovery_results_discovery_id_idx ON discovery_results (discovery_id);
@@ -0,0 +1,7 @@
+-- Scheduling columns read by DiscoveryScheduler: schedule_interval in seconds (NULL or 0 disables the schedule),
+-- priority (higher starts first) and last_run_at, the start of the latest run in epoch millis
+ALTER TABLE discoveries ADD COLUMN IF NOT EXISTS schedule_interval INTEGER;
+
+ALTER TABLE discoveries ADD COLUMN IF NOT EXISTS priority INTEGER;
+
+ALTER TABLE discoveries ADD COLUMN IF NOT EXISTS last_run_at BIGINT;